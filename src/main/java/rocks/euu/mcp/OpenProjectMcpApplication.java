@@ -2,8 +2,10 @@ package rocks.euu.mcp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class OpenProjectMcpApplication {
     
     public static void main(String[] args) {
@@ -0,0 +1,112 @@
+package rocks.euu.mcp.cache;
+
+import rocks.euu.mcp.config.OpenProjectProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the results of create operations by idempotency key, so a client that
+ * retries after a timeout gets the original result instead of a duplicate.
+ * 
+ * The store is bounded (openproject.idempotency-max-entries, oldest completed entries
+ * are dropped first) and entries expire after openproject.idempotency-ttl. A call that
+ * arrives while the first call with the same key is still running waits for it, so
+ * running calls are never dropped, even if that exceeds the bound for a while.
+ * Failed calls are forgotten, so they can be retried with the same key.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+    
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+    
+    public IdempotencyStore(OpenProjectProperties properties) {
+        this.ttlNanos = properties.getIdempotencyTtl().toNanos();
+        this.maxEntries = properties.getIdempotencyMaxEntries();
+        this.entries = new LinkedHashMap<>();
+    }
+    
+    /**
+     * Run the action once per key and return its result for every call with that key
+     */
+    public String execute(String key, Supplier<String> action) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Entry existing;
+        synchronized (entries) {
+            long now = System.nanoTime();
+            removeExpired(now);
+            existing = entries.get(key);
+            if (existing == null) {
+                entries.put(key, new Entry(future, now));
+                removeEldest();
+            }
+        }
+        
+        if (existing != null) {
+            log.info("Idempotency key '{}' seen before, returning original result", key);
+            try {
+                return existing.result().join();
+            } catch (CompletionException e) {
+                throw unchecked(e.getCause() != null ? e.getCause() : e);
+            }
+        }
+        
+        try {
+            String result = action.get();
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Any failure, including errors, must release the waiting duplicates
+            synchronized (entries) {
+                entries.remove(key);
+            }
+            future.completeExceptionally(e);
+            throw unchecked(e);
+        }
+    }
+    
+    private void removeEldest() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            if (it.next().result().isDone()) {
+                it.remove();
+            }
+        }
+    }
+    
+    private void removeExpired(long now) {
+        // Entries are in insertion order, so the expired ones are at the front
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (now - entry.createdAt() < ttlNanos) {
+                break;
+            }
+            if (entry.result().isDone()) {
+                it.remove();
+            }
+        }
+    }
+    
+    private static RuntimeException unchecked(Throwable e) {
+        if (e instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        return new RuntimeException(e);
+    }
+    
+    private record Entry(CompletableFuture<String> result, long createdAt) {
+    }
+}
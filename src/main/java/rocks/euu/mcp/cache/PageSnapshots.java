@@ -0,0 +1,79 @@
+package rocks.euu.mcp.cache;
+
+import rocks.euu.mcp.config.OpenProjectProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Short-lived snapshots of list results that did not fit into one tool response, so the
+ * following pages are served from memory instead of being fetched from OpenProject again.
+ * 
+ * Snapshots expire after openproject.page-snapshot-ttl; at most
+ * openproject.page-snapshot-max-entries are kept, the oldest are dropped first.
+ */
+@Component
+public class PageSnapshots {
+    
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+    
+    public PageSnapshots(OpenProjectProperties properties) {
+        this.ttlNanos = properties.getPageSnapshotTtl().toNanos();
+        this.maxEntries = properties.getPageSnapshotMaxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    /**
+     * The items of a list result, already serialized, and the fields that go with every page
+     * (e.g. the stale marker)
+     */
+    public record Snapshot(String field, List<String> items, Map<String, Object> attributes) {
+    }
+    
+    /**
+     * Keep a snapshot and return its id
+     */
+    public String put(Snapshot snapshot) {
+        String id = UUID.randomUUID().toString();
+        synchronized (entries) {
+            long now = System.nanoTime();
+            removeExpired(now);
+            entries.put(id, new Entry(snapshot, now));
+        }
+        return id;
+    }
+    
+    /**
+     * The snapshot with the id, empty if it is unknown or expired
+     */
+    public Optional<Snapshot> get(String id) {
+        synchronized (entries) {
+            removeExpired(System.nanoTime());
+            Entry entry = entries.get(id);
+            return Optional.ofNullable(entry).map(Entry::snapshot);
+        }
+    }
+    
+    private void removeExpired(long now) {
+        // Entries are in insertion order, so the expired ones are at the front
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext() && now - it.next().createdAt() >= ttlNanos) {
+            it.remove();
+        }
+    }
+    
+    private record Entry(Snapshot snapshot, long createdAt) {
+    }
+}
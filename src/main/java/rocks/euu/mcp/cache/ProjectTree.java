@@ -0,0 +1,256 @@
+package rocks.euu.mcp.cache;
+
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.model.Project;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * In-memory project hierarchy, built from one paged scan of all projects.
+ * 
+ * Keeps parent and child indexes and caches assembled subtrees. Created or
+ * changed projects are applied incrementally with {@link #put(Project)}, which
+ * only drops the cached subtrees along the affected ancestor chains. A loaded tree
+ * is rebuilt on a schedule (openproject.project-tree-refresh), so projects changed
+ * in OpenProject without a webhook show up, too.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProjectTree {
+    
+    private final OpenProjectClient client;
+    
+    private final Map<Integer, Project> projects = new HashMap<>();
+    private final Map<String, Integer> idsByIdentifier = new HashMap<>();
+    private final Map<Integer, Integer> parentIds = new HashMap<>();
+    private final Map<Integer, Set<Integer>> childIds = new HashMap<>();
+    private final Map<Integer, Node> subtrees = new HashMap<>();
+    private List<Node> forest;
+    private boolean loaded;
+    
+    /**
+     * A project with its sub-projects
+     */
+    public record Node(Integer id, String identifier, String name, List<Node> children) {
+    }
+    
+    /**
+     * Rebuild the tree from a full project scan
+     */
+    public void refresh() {
+        List<Project> all = client.listAllProjects();
+        synchronized (this) {
+            clear();
+            all.forEach(this::index);
+            loaded = true;
+        }
+        log.info("Loaded project tree with {} projects", all.size());
+    }
+    
+    /**
+     * Rebuild a loaded tree; a tree nobody has read yet stays unloaded. Keeps the
+     * previous tree if OpenProject is not reachable.
+     */
+    @Scheduled(fixedDelayString = "${openproject.project-tree-refresh:PT5M}",
+            initialDelayString = "${openproject.project-tree-refresh:PT5M}")
+    public void refreshIfLoaded() {
+        synchronized (this) {
+            if (!loaded) {
+                return;
+            }
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("Failed to refresh project tree, keeping previous tree: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Drop everything, the next read scans the projects again
+     */
+    public synchronized void invalidate() {
+        clear();
+    }
+    
+    /**
+     * All projects, in ID order
+     */
+    public List<Project> projects() {
+        ensureLoaded();
+        synchronized (this) {
+            return projects.values().stream()
+                    .sorted((a, b) -> Integer.compare(a.getId(), b.getId()))
+                    .toList();
+        }
+    }
+    
+    /**
+     * Find a project by numeric ID or identifier
+     */
+    public Optional<Project> find(String idOrIdentifier) {
+        ensureLoaded();
+        synchronized (this) {
+            return Optional.ofNullable(resolveId(idOrIdentifier)).map(projects::get);
+        }
+    }
+    
+    /**
+     * Find a project by ID without loading the tree, empty if it is not loaded yet
+     */
+    public synchronized Optional<Project> findLoaded(Integer projectId) {
+        return Optional.ofNullable(projects.get(projectId));
+    }
+    
+    /**
+     * The project with all its descendants
+     */
+    public Node subtree(String idOrIdentifier) {
+        ensureLoaded();
+        synchronized (this) {
+            Integer id = resolveId(idOrIdentifier);
+            if (id == null) {
+                throw new IllegalArgumentException("Unknown project '" + idOrIdentifier + "'");
+            }
+            return node(id);
+        }
+    }
+    
+    /**
+     * All top-level projects with their descendants
+     */
+    public List<Node> forest() {
+        ensureLoaded();
+        synchronized (this) {
+            if (forest == null) {
+                // Projects whose parent is not visible to the API user count as top-level, too
+                forest = projects.keySet().stream()
+                        .filter(id -> !projects.containsKey(parentIds.get(id)))
+                        .sorted()
+                        .map(this::node)
+                        .toList();
+            }
+            return forest;
+        }
+    }
+    
+    /**
+     * Add or update one project, e.g. after it was created
+     */
+    public synchronized void put(Project project) {
+        if (!loaded || project == null || project.getId() == null) {
+            return;
+        }
+        unlink(project.getId());
+        index(project);
+    }
+    
+    /**
+     * Remove one project; its sub-projects become top-level until the next refresh
+     */
+    public synchronized void remove(Integer projectId) {
+        if (!projects.containsKey(projectId)) {
+            return;
+        }
+        unlink(projectId);
+        projects.remove(projectId);
+        for (Integer childId : childIds.getOrDefault(projectId, Set.of())) {
+            parentIds.remove(childId);
+        }
+        childIds.remove(projectId);
+    }
+    
+    private void ensureLoaded() {
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+        }
+        refresh();
+    }
+    
+    private void index(Project project) {
+        projects.put(project.getId(), project);
+        if (project.getIdentifier() != null) {
+            idsByIdentifier.put(project.getIdentifier(), project.getId());
+        }
+        Integer parentId = project.getLinks() != null && project.getLinks().getParent() != null
+                ? ReferenceDataCache.idFromHref(project.getLinks().getParent().getHref())
+                : null;
+        if (parentId != null) {
+            parentIds.put(project.getId(), parentId);
+            childIds.computeIfAbsent(parentId, k -> new TreeSet<>()).add(project.getId());
+        }
+        invalidateAncestors(project.getId());
+    }
+    
+    /**
+     * Detach a project from its parent and identifier, keeping its own children
+     */
+    private void unlink(Integer projectId) {
+        invalidateAncestors(projectId);
+        idsByIdentifier.values().remove(projectId);
+        Integer parentId = parentIds.remove(projectId);
+        Set<Integer> siblings = parentId != null ? childIds.get(parentId) : null;
+        if (siblings != null) {
+            siblings.remove(projectId);
+        }
+    }
+    
+    private void invalidateAncestors(Integer projectId) {
+        forest = null;
+        Set<Integer> seen = new TreeSet<>();
+        for (Integer id = projectId; id != null && seen.add(id); id = parentIds.get(id)) {
+            subtrees.remove(id);
+        }
+    }
+    
+    private Node node(Integer id) {
+        Node cached = subtrees.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        Project project = projects.get(id);
+        List<Node> children = new ArrayList<>();
+        for (Integer childId : childIds.getOrDefault(id, Set.of())) {
+            if (projects.containsKey(childId)) {
+                children.add(node(childId));
+            }
+        }
+        Node node = new Node(id, project.getIdentifier(), project.getName(), List.copyOf(children));
+        subtrees.put(id, node);
+        return node;
+    }
+    
+    private Integer resolveId(String idOrIdentifier) {
+        if (idOrIdentifier == null) {
+            return null;
+        }
+        Integer id = idsByIdentifier.get(idOrIdentifier);
+        if (id == null && idOrIdentifier.chars().allMatch(Character::isDigit) && !idOrIdentifier.isEmpty()) {
+            id = Integer.valueOf(idOrIdentifier);
+        }
+        return projects.containsKey(id) ? id : null;
+    }
+    
+    private void clear() {
+        projects.clear();
+        idsByIdentifier.clear();
+        parentIds.clear();
+        childIds.clear();
+        subtrees.clear();
+        forest = null;
+        loaded = false;
+    }
+}
@@ -0,0 +1,192 @@
+package rocks.euu.mcp.cache;
+
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.model.Membership;
+import rocks.euu.mcp.model.Priority;
+import rocks.euu.mcp.model.Status;
+import rocks.euu.mcp.model.Type;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Types, statuses, priorities and project members, loaded at startup and refreshed
+ * on a schedule (openproject.reference-data-refresh).
+ * 
+ * Lookups read an immutable snapshot that is swapped as a whole on refresh,
+ * so they never call OpenProject and never see a half-loaded state.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataCache {
+    
+    private final OpenProjectClient client;
+    
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    
+    /**
+     * Reload all reference data. Keeps the previous snapshot if OpenProject is not reachable.
+     */
+    @Scheduled(fixedDelayString = "${openproject.reference-data-refresh:PT15M}")
+    public void refresh() {
+        try {
+            List<Type> types = client.listTypes();
+            List<Status> statuses = client.listStatuses();
+            List<Priority> priorities = client.listPriorities();
+            List<Membership> memberships = client.listMemberships();
+            
+            snapshot = Snapshot.of(types, statuses, priorities, memberships);
+            log.info("Loaded reference data: {} types, {} statuses, {} priorities, {} memberships",
+                    types.size(), statuses.size(), priorities.size(), memberships.size());
+            
+        } catch (Exception e) {
+            log.warn("Failed to load reference data, keeping previous snapshot: {}", e.getMessage());
+        }
+    }
+    
+    public List<Type> types() {
+        return snapshot.types();
+    }
+    
+    public List<Status> statuses() {
+        return snapshot.statuses();
+    }
+    
+    public List<Priority> priorities() {
+        return snapshot.priorities();
+    }
+    
+    /**
+     * Find a type ID by name, case-insensitive
+     */
+    public Optional<Integer> typeId(String name) {
+        return Optional.ofNullable(snapshot.typeIds().get(key(name)));
+    }
+    
+    /**
+     * The type OpenProject marks as default, if known
+     */
+    public Optional<Integer> defaultTypeId() {
+        return snapshot.types().stream()
+                .filter(type -> Boolean.TRUE.equals(type.getIsDefault()))
+                .map(Type::getId)
+                .findFirst();
+    }
+    
+    /**
+     * Find a status ID by name, case-insensitive
+     */
+    public Optional<Integer> statusId(String name) {
+        return Optional.ofNullable(snapshot.statusIds().get(key(name)));
+    }
+    
+    /**
+     * Find a priority ID by name, case-insensitive
+     */
+    public Optional<Integer> priorityId(String name) {
+        return Optional.ofNullable(snapshot.priorityIds().get(key(name)));
+    }
+    
+    /**
+     * Find a user ID by name among all project members, case-insensitive
+     */
+    public Optional<Integer> principalId(String name) {
+        return Optional.ofNullable(snapshot.principalIds().get(key(name)));
+    }
+    
+    /**
+     * Whether the status with this ID closes a work package
+     */
+    public boolean isClosedStatus(Integer statusId) {
+        return statusId != null && snapshot.closedStatusIds().contains(statusId);
+    }
+    
+    /**
+     * Resolve a type, status or priority href like /api/v3/statuses/7 to its name
+     */
+    public Optional<String> nameForHref(String href) {
+        return Optional.ofNullable(href).map(h -> snapshot.namesByHref().get(h));
+    }
+    
+    /**
+     * Extract the numeric ID from a resource href like /api/v3/users/5
+     */
+    public static Integer idFromHref(String href) {
+        if (href == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(href.substring(href.lastIndexOf('/') + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private static String key(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private record Snapshot(
+            List<Type> types,
+            List<Status> statuses,
+            List<Priority> priorities,
+            Map<String, Integer> typeIds,
+            Map<String, Integer> statusIds,
+            Map<String, Integer> priorityIds,
+            Map<String, Integer> principalIds,
+            Set<Integer> closedStatusIds,
+            Map<String, String> namesByHref) {
+        
+        static final Snapshot EMPTY = new Snapshot(
+                List.of(), List.of(), List.of(), Map.of(), Map.of(), Map.of(), Map.of(), Set.of(), Map.of());
+        
+        static Snapshot of(List<Type> types, List<Status> statuses,
+                           List<Priority> priorities, List<Membership> memberships) {
+            Map<String, Integer> typeIds = new HashMap<>();
+            Map<String, Integer> statusIds = new HashMap<>();
+            Map<String, Integer> priorityIds = new HashMap<>();
+            Map<String, Integer> principalIds = new HashMap<>();
+            Set<Integer> closedStatusIds = new HashSet<>();
+            Map<String, String> namesByHref = new HashMap<>();
+            
+            for (Type type : types) {
+                typeIds.put(key(type.getName()), type.getId());
+                namesByHref.put("/api/v3/types/" + type.getId(), type.getName());
+            }
+            for (Status status : statuses) {
+                statusIds.put(key(status.getName()), status.getId());
+                namesByHref.put("/api/v3/statuses/" + status.getId(), status.getName());
+                if (Boolean.TRUE.equals(status.getIsClosed())) {
+                    closedStatusIds.add(status.getId());
+                }
+            }
+            for (Priority priority : priorities) {
+                priorityIds.put(key(priority.getName()), priority.getId());
+                namesByHref.put("/api/v3/priorities/" + priority.getId(), priority.getName());
+            }
+            for (Membership membership : memberships) {
+                Membership.Link principal = membership.getLinks() != null ? membership.getLinks().getPrincipal() : null;
+                Integer principalId = principal != null ? idFromHref(principal.getHref()) : null;
+                if (principalId != null && principal.getTitle() != null) {
+                    principalIds.put(key(principal.getTitle()), principalId);
+                    namesByHref.put(principal.getHref(), principal.getTitle());
+                }
+            }
+            
+            return new Snapshot(
+                    List.copyOf(types), List.copyOf(statuses), List.copyOf(priorities),
+                    Map.copyOf(typeIds), Map.copyOf(statusIds), Map.copyOf(priorityIds),
+                    Map.copyOf(principalIds), Set.copyOf(closedStatusIds), Map.copyOf(namesByHref));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package rocks.euu.mcp.cache;
+
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.client.WorkPackageQuery;
+import rocks.euu.mcp.config.OpenProjectProperties;
+import rocks.euu.mcp.model.WorkPackage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * All work packages of recently read projects, keyed by project ID.
+ * 
+ * A project is loaded with one paged scan on first read and then kept current
+ * with {@link #put(WorkPackage)} and {@link #remove(Integer, Integer)}, e.g. from
+ * webhooks, and dropped with {@link #invalidate(Integer)} after this server wrote to it.
+ * Changes made elsewhere without a webhook are picked up when the project is scanned
+ * again after openproject.work-package-cache-ttl. At most {@value #MAX_PROJECTS}
+ * projects are kept, least recently read first out.
+ */
+@Slf4j
+@Component
+public class WorkPackageCache {
+    
+    static final int MAX_PROJECTS = 32;
+    
+    private final OpenProjectClient client;
+    private final long ttlNanos;
+    
+    private final Map<Integer, Long> loadedAt = new HashMap<>();
+    private final Map<Integer, Map<Integer, WorkPackage>> projects = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Map<Integer, WorkPackage>> eldest) {
+            if (size() <= MAX_PROJECTS) {
+                return false;
+            }
+            loadedAt.remove(eldest.getKey());
+            return true;
+        }
+    };
+    
+    /**
+     * Number of changes seen per project, so a scan that overlapped with a change is not kept
+     */
+    private final Map<Integer, Long> changes = new HashMap<>();
+    
+    public WorkPackageCache(OpenProjectClient client, OpenProjectProperties properties) {
+        this.client = client;
+        this.ttlNanos = properties.getWorkPackageCacheTtl().toNanos();
+    }
+    
+    /**
+     * All work packages of the project, in ID order, loading the project if needed
+     */
+    public List<WorkPackage> workPackages(Integer projectId) {
+        long changesBefore;
+        synchronized (this) {
+            Map<Integer, WorkPackage> loaded = projects.get(projectId);
+            if (loaded != null && System.nanoTime() - loadedAt.get(projectId) < ttlNanos) {
+                return List.copyOf(loaded.values());
+            }
+            changesBefore = changes.getOrDefault(projectId, 0L);
+        }
+        
+        WorkPackageQuery all = WorkPackageQuery.none();
+        all.setStatusState("all");
+        all.sortBy("id", "asc");
+        List<WorkPackage> scanned = client.streamWorkPackages(projectId.toString(), all).collectList().block();
+        
+        synchronized (this) {
+            if (changes.getOrDefault(projectId, 0L) == changesBefore) {
+                Map<Integer, WorkPackage> byId = new TreeMap<>();
+                scanned.forEach(workPackage -> byId.put(workPackage.getId(), workPackage));
+                projects.put(projectId, byId);
+                loadedAt.put(projectId, System.nanoTime());
+                log.info("Loaded {} work packages of project {}", byId.size(), projectId);
+            }
+        }
+        return scanned;
+    }
+    
+    /**
+     * Whether the project's work packages are held, without loading them
+     */
+    public synchronized boolean isLoaded(Integer projectId) {
+        return projects.containsKey(projectId);
+    }
+    
+    /**
+     * Add or replace a work package in its project, if that project is loaded. A work package
+     * that moved is removed from the other loaded projects.
+     * 
+     * @return the IDs of the projects whose work packages changed, empty without a project link
+     */
+    public synchronized Set<Integer> put(WorkPackage workPackage) {
+        Integer projectId = projectId(workPackage);
+        if (projectId == null || workPackage.getId() == null) {
+            return Set.of();
+        }
+        Set<Integer> affected = new TreeSet<>();
+        affected.add(projectId);
+        projects.forEach((loadedId, loaded) -> {
+            if (!loadedId.equals(projectId) && loaded.remove(workPackage.getId()) != null) {
+                affected.add(loadedId);
+            }
+        });
+        affected.forEach(id -> changes.merge(id, 1L, Long::sum));
+        Map<Integer, WorkPackage> loaded = projects.get(projectId);
+        if (loaded != null) {
+            loaded.put(workPackage.getId(), workPackage);
+        }
+        return affected;
+    }
+    
+    /**
+     * Remove a work package from a loaded project
+     */
+    public synchronized void remove(Integer projectId, Integer workPackageId) {
+        changes.merge(projectId, 1L, Long::sum);
+        Map<Integer, WorkPackage> loaded = projects.get(projectId);
+        if (loaded != null) {
+            loaded.remove(workPackageId);
+        }
+    }
+    
+    /**
+     * Remove a work package from every loaded project, e.g. after it was deleted
+     * 
+     * @return the IDs of the projects that held it
+     */
+    public synchronized Set<Integer> removeEverywhere(Integer workPackageId) {
+        Set<Integer> affected = new TreeSet<>();
+        projects.forEach((projectId, loaded) -> {
+            if (loaded.remove(workPackageId) != null) {
+                affected.add(projectId);
+            }
+        });
+        affected.forEach(id -> changes.merge(id, 1L, Long::sum));
+        return affected;
+    }
+    
+    /**
+     * Drop a project, the next read scans it again
+     */
+    public synchronized void invalidate(Integer projectId) {
+        changes.merge(projectId, 1L, Long::sum);
+        projects.remove(projectId);
+        loadedAt.remove(projectId);
+    }
+    
+    private static Integer projectId(WorkPackage workPackage) {
+        return workPackage.getLinks() != null && workPackage.getLinks().getProject() != null
+                ? ReferenceDataCache.idFromHref(workPackage.getLinks().getProject().getHref())
+                : null;
+    }
+}
@@ -0,0 +1,24 @@
+package rocks.euu.mcp.client;
+
+/**
+ * Thrown instead of calling OpenProject, or in place of the response, once the
+ * tool call was cancelled or ran past its deadline
+ */
+public class CallCancelledException extends RuntimeException {
+    
+    public CallCancelledException(String reason) {
+        super(reason);
+    }
+    
+    /**
+     * Whether the failure, or one of its causes, is a cancelled call
+     */
+    public static boolean isCause(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CallCancelledException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
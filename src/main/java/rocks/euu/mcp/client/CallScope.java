@@ -0,0 +1,109 @@
+package rocks.euu.mcp.client;
+
+import io.micrometer.context.ContextRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Deadline and cancellation of one tool call, shared by all OpenProject requests it makes.
+ * 
+ * The scope is a thread local registered for context propagation, so blocking calls and
+ * pipelines started on the tool's thread carry it in their Reactor context, where the
+ * {@link CallScopeFilter} picks it up for every exchange.
+ */
+public final class CallScope {
+    
+    public static final String KEY = "openproject.call-scope";
+    
+    private static final ThreadLocal<CallScope> CURRENT = new ThreadLocal<>();
+    
+    static {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(KEY, CURRENT);
+    }
+    
+    private final Duration timeout;
+    private final Instant deadline;
+    private final String sessionId;
+    private final boolean bulk;
+    private final Sinks.Empty<Void> cancelled = Sinks.empty();
+    private volatile String reason;
+    
+    public CallScope(Duration timeout) {
+        this(timeout, null, false);
+    }
+    
+    /**
+     * @param sessionId MCP session of the call, for admission control
+     * @param bulk whether the tool makes many requests, so its requests yield to interactive ones
+     */
+    public CallScope(Duration timeout, String sessionId, boolean bulk) {
+        this.timeout = timeout;
+        this.deadline = Instant.now().plus(timeout);
+        this.sessionId = sessionId;
+        this.bulk = bulk;
+    }
+    
+    /**
+     * The scope of the tool call running on this thread, if any
+     */
+    public static Optional<CallScope> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+    
+    public String sessionId() {
+        return sessionId;
+    }
+    
+    public boolean bulk() {
+        return bulk;
+    }
+    
+    /**
+     * Run {@code action} with this scope as the current one
+     */
+    public <T> T run(Supplier<T> action) {
+        CallScope previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+    
+    /**
+     * Abort the requests in flight and fail all further ones; only the first reason is kept
+     */
+    public void cancel(String reason) {
+        if (this.reason == null) {
+            this.reason = reason;
+        }
+        cancelled.tryEmitEmpty();
+    }
+    
+    /**
+     * Whether the call was cancelled or its deadline has passed
+     */
+    public boolean isDone() {
+        return reason != null || !Instant.now().isBefore(deadline);
+    }
+    
+    public CallCancelledException exception() {
+        return new CallCancelledException(reason != null
+                ? reason
+                : "Tool call exceeded its deadline of " + timeout.toSeconds() + "s");
+    }
+    
+    /**
+     * Completes on cancellation or at the deadline, whichever comes first
+     */
+    Mono<Void> aborted() {
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return Mono.firstWithSignal(cancelled.asMono(), Mono.delay(remaining.isNegative() ? Duration.ZERO : remaining).then());
+    }
+}
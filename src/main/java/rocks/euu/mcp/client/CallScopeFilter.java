@@ -0,0 +1,42 @@
+package rocks.euu.mcp.client;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Binds OpenProject exchanges to the {@link CallScope} in their Reactor context. Once the
+ * tool call is cancelled or past its deadline, requests in flight are cancelled, which
+ * aborts the exchange and releases its connection, and new requests are not sent.
+ * 
+ * Applied outside the circuit breakers, so an aborted call counts as cancelled, not failed.
+ */
+class CallScopeFilter implements ExchangeFilterFunction {
+    
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context -> {
+            CallScope scope = context.getOrDefault(CallScope.KEY, null);
+            if (scope == null) {
+                return next.exchange(request);
+            }
+            if (scope.isDone()) {
+                return Mono.error(scope.exception());
+            }
+            // takeUntilOther only cancels the exchange when the other publisher completes, so
+            // the error is raised after it. The body is read after the filter returns, so it is
+            // bound separately.
+            return next.exchange(request)
+                    .takeUntilOther(scope.aborted())
+                    .switchIfEmpty(Mono.error(scope::exception))
+                    .map(response -> response.mutate()
+                            .body(body -> body.takeUntilOther(scope.aborted())
+                                    .concatWith(Mono.defer(() -> scope.isDone()
+                                            ? Mono.error(scope.exception())
+                                            : Mono.empty())))
+                            .build());
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package rocks.euu.mcp.client;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Circuit breaker for one OpenProject endpoint.
+ * 
+ * CLOSED: calls pass, outcomes are kept in a window of the last calls. Once the window
+ * holds enough calls and the failure rate reaches the threshold, the circuit opens.
+ * OPEN: calls fail fast until the open duration has passed.
+ * HALF_OPEN: a single probe call is let through; its success closes the circuit,
+ * its failure opens it again.
+ */
+public class CircuitBreaker {
+    
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+    
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+    
+    /**
+     * Ring buffer of the last outcomes, true = failure
+     */
+    private final boolean[] window;
+    private int windowPosition;
+    private int calls;
+    private int failures;
+    
+    private State state = State.CLOSED;
+    private Instant openedAt;
+    private boolean probeInFlight;
+    
+    public CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, Duration openDuration, Clock clock) {
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+    
+    /**
+     * Whether a call may go out now. Every permitted call must be followed by
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onCancel()}.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.instant().isBefore(openedAt.plus(openDuration))) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+    
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+    
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (calls >= minimumCalls && failures * 100 >= failureRateThreshold * calls) {
+                open();
+            }
+        }
+    }
+    
+    /**
+     * The call was cancelled before it had an outcome; a probe may be retried
+     */
+    public synchronized void onCancel() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+    
+    public synchronized State state() {
+        return state;
+    }
+    
+    /**
+     * Time until the next probe is let through, zero unless the circuit is open
+     */
+    public synchronized Duration retryAfter() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        Duration remaining = Duration.between(clock.instant(), openedAt.plus(openDuration));
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+    
+    private void record(boolean failure) {
+        if (calls == window.length) {
+            if (window[windowPosition]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            failures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+    
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.instant();
+        probeInFlight = false;
+    }
+    
+    private void close() {
+        state = State.CLOSED;
+        probeInFlight = false;
+        calls = 0;
+        failures = 0;
+        windowPosition = 0;
+    }
+}
@@ -0,0 +1,109 @@
+package rocks.euu.mcp.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import rocks.euu.mcp.config.OpenProjectProperties;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One circuit breaker per OpenProject endpoint, applied as a WebClient filter.
+ * 
+ * An endpoint is the HTTP method plus the request path with the ids replaced by {id},
+ * e.g. "GET /api/v3/projects/{id}/work_packages". Server errors (5xx), timeouts and
+ * connection failures count as failures; client errors (4xx) show that OpenProject
+ * is up and count as successes.
+ */
+@Slf4j
+@Component
+public class CircuitBreakers implements ExchangeFilterFunction {
+    
+    private final OpenProjectProperties properties;
+    private final Clock clock;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    
+    @Autowired
+    public CircuitBreakers(OpenProjectProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+    
+    public CircuitBreakers(OpenProjectProperties properties, Clock clock) {
+        this.properties = properties;
+        this.clock = clock;
+    }
+    
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        String endpoint = endpoint(request);
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpoint, key -> new CircuitBreaker(
+                properties.getCircuitWindowSize(),
+                properties.getCircuitMinimumCalls(),
+                properties.getCircuitFailureRateThreshold(),
+                properties.getCircuitOpenDuration(),
+                clock));
+        
+        return Mono.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                return Mono.error(new CircuitOpenException(endpoint, breaker.retryAfter()));
+            }
+            AtomicBoolean recorded = new AtomicBoolean();
+            return next.exchange(request)
+                    .doOnNext(response -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            if (response.statusCode().is5xxServerError()) {
+                                failed(endpoint, breaker);
+                            } else {
+                                breaker.onSuccess();
+                            }
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            failed(endpoint, breaker);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            breaker.onCancel();
+                        }
+                    });
+        });
+    }
+    
+    /**
+     * State of the circuit for an endpoint, CLOSED if it was never called
+     */
+    public CircuitBreaker.State state(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        return breaker != null ? breaker.state() : CircuitBreaker.State.CLOSED;
+    }
+    
+    private void failed(String endpoint, CircuitBreaker breaker) {
+        CircuitBreaker.State before = breaker.state();
+        breaker.onFailure();
+        if (before != CircuitBreaker.State.OPEN && breaker.state() == CircuitBreaker.State.OPEN) {
+            log.warn("Circuit for {} opened, failing fast for {}", endpoint, properties.getCircuitOpenDuration());
+        }
+    }
+    
+    static String endpoint(ClientRequest request) {
+        String[] segments = request.url().getRawPath().split("/");
+        StringBuilder endpoint = new StringBuilder(request.method().name()).append(' ');
+        // OpenProject paths alternate between collection and id after /api/v3
+        int offset = segments.length > 3 && "api".equals(segments[1]) ? 3 : 1;
+        for (int i = 1; i < segments.length; i++) {
+            boolean id = i >= offset && (i - offset) % 2 == 1;
+            endpoint.append('/').append(id ? "{id}" : segments[i]);
+        }
+        return endpoint.toString();
+    }
+}
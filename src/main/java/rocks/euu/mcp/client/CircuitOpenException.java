@@ -0,0 +1,26 @@
+package rocks.euu.mcp.client;
+
+import java.time.Duration;
+
+/**
+ * Thrown instead of calling OpenProject while the circuit of an endpoint is open
+ */
+public class CircuitOpenException extends RuntimeException {
+    
+    public CircuitOpenException(String endpoint, Duration retryAfter) {
+        super("OpenProject is unavailable (" + endpoint + " failed repeatedly), next attempt in "
+                + Math.max(1, retryAfter.toSeconds()) + "s");
+    }
+    
+    /**
+     * Whether the failure, or one of its causes, is an open circuit
+     */
+    public static boolean isCause(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CircuitOpenException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,15 @@
+package rocks.euu.mcp.client;
+
+import java.time.Instant;
+
+/**
+ * A read result together with the time it was fetched from OpenProject.
+ * {@code stale} is set when OpenProject could not be reached and the last
+ * known result is served instead.
+ */
+public record LastKnown<T>(T value, Instant fetchedAt, boolean stale) {
+    
+    LastKnown<T> asStale() {
+        return new LastKnown<>(value, fetchedAt, true);
+    }
+}
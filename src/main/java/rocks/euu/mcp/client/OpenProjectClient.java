@@ -2,26 +2,74 @@ package rocks.euu.mcp.client;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import rocks.euu.mcp.model.Membership;
+import rocks.euu.mcp.model.Priority;
 import rocks.euu.mcp.model.Project;
 import rocks.euu.mcp.model.Relation;
+import rocks.euu.mcp.model.Status;
+import rocks.euu.mcp.model.Type;
 import rocks.euu.mcp.model.WorkPackage;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.net.URI;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class OpenProjectClient {
     
+    /**
+     * Page size for collection requests that are read completely
+     */
+    private static final int PAGE_SIZE = 100;
+    
+    /**
+     * Number of IDs per filtered request, keeps the encoded filter well below URL length limits
+     */
+    static final int ID_CHUNK_SIZE = 100;
+    
+    /**
+     * Maximum number of remembered read results for the stale fallback
+     */
+    private static final int MAX_LAST_KNOWN = 256;
+    
     private final WebClient openProjectWebClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
+    private final Map<String, LastKnown<?>> lastKnown = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LastKnown<?>> eldest) {
+            return size() > MAX_LAST_KNOWN;
+        }
+    };
+    
+    public OpenProjectClient(WebClient openProjectWebClient, CircuitBreakers circuitBreakers,
+            UpstreamAdmission upstreamAdmission) {
+        // Requests wait for admission before the circuit breakers see them
+        this.openProjectWebClient = openProjectWebClient.mutate()
+                .filter(new CallScopeFilter())
+                .filter(upstreamAdmission)
+                .filter(circuitBreakers)
+                .build();
+    }
+    
     /**
      * List all projects accessible to the API user
      */
@@ -45,12 +93,28 @@ public class OpenProjectClient {
         } catch (WebClientResponseException e) {
             log.error("Failed to list projects: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
             throw new RuntimeException("Failed to list projects: " + e.getMessage(), e);
+        } catch (CircuitOpenException | CallCancelledException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to parse projects response", e);
             throw new RuntimeException("Failed to parse projects: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Like {@link #listAllProjects()}, but serves the last known projects while the circuit is open
+     */
+    public LastKnown<List<Project>> listProjectsOrLastKnown() {
+        return orLastKnown("projects", this::listAllProjects);
+    }
+    
+    /**
+     * List all projects accessible to the API user, reading every page
+     */
+    public List<Project> listAllProjects() {
+        return listAll("/projects", Project.class, "projects");
+    }
+    
     /**
      * Get a specific project by identifier
      */
@@ -73,23 +137,24 @@ public class OpenProjectClient {
      */
     public Project createProject(String name, String identifier, String description, String parentId) {
         try {
-            StringBuilder body = new StringBuilder();
-            body.append("{");
-            body.append("\"name\":\"").append(escapeJson(name)).append("\"");
-            body.append(",\"identifier\":\"").append(escapeJson(identifier)).append("\"");
-            if (description != null) {
-                body.append(",\"description\":{\"raw\":\"").append(escapeJson(description)).append("\"}");
-            }
-            if (parentId != null) {
-                body.append(",\"_links\":{\"parent\":{\"href\":\"/api/v3/projects/").append(escapeJson(parentId)).append("\"}}");
-            }
-            body.append("}");
-            
-            log.debug("Creating project: {}", body);
+            log.debug("Creating project '{}' ({}) under parent {}", name, identifier, parentId);
             
             return openProjectWebClient.post()
                     .uri("/projects")
-                    .bodyValue(body.toString())
+                    .body(RequestBodyWriter.jsonObject(json -> {
+                        json.writeStringField("name", name);
+                        json.writeStringField("identifier", identifier);
+                        if (description != null) {
+                            json.writeObjectFieldStart("description");
+                            json.writeStringField("raw", description);
+                            json.writeEndObject();
+                        }
+                        if (parentId != null) {
+                            json.writeObjectFieldStart("_links");
+                            RequestBodyWriter.writeLink(json, "parent", "/api/v3/projects/" + parentId);
+                            json.writeEndObject();
+                        }
+                    }))
                     .retrieve()
                     .bodyToMono(Project.class)
                     .block();
@@ -104,9 +169,16 @@ public class OpenProjectClient {
      * List all work packages in a project
      */
     public List<WorkPackage> listWorkPackages(String projectId) {
+        return listWorkPackages(projectId, WorkPackageQuery.none());
+    }
+    
+    /**
+     * List the work packages in a project that match the query, filtered and sorted by OpenProject
+     */
+    public List<WorkPackage> listWorkPackages(String projectId, WorkPackageQuery query) {
         try {
             String response = openProjectWebClient.get()
-                    .uri("/projects/{projectId}/work_packages", projectId)
+                    .uri(uriBuilder -> workPackagesUri(uriBuilder, projectId, query))
                     .retrieve()
                     .bodyToMono(String.class)
                     .block();
@@ -124,6 +196,8 @@ public class OpenProjectClient {
             log.error("Failed to list work packages for project {}: {} - {}", 
                     projectId, e.getStatusCode(), e.getResponseBodyAsString());
             throw new RuntimeException("Failed to list work packages: " + e.getMessage(), e);
+        } catch (CircuitOpenException | CallCancelledException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to parse work packages response", e);
             throw new RuntimeException("Failed to parse work packages: " + e.getMessage(), e);
@@ -131,49 +205,304 @@ public class OpenProjectClient {
     }
     
     /**
-     * Create a new work package in a project
+     * All work packages of a project that match the query, read page by page, or the last
+     * known result of the same query while the circuit is open
      */
-    public WorkPackage createWorkPackage(String projectId, String subject, 
-                                          String startDate, String dueDate,
-                                          String description, Integer typeId) {
+    public LastKnown<List<WorkPackage>> listWorkPackagesOrLastKnown(String projectId, WorkPackageQuery query) {
+        String key = "work_packages:" + projectId + ":" + query.toFiltersJson(objectMapper)
+                + ":" + query.toSortByJson(objectMapper) + ":" + query.getPageSize();
+        return orLastKnown(key, () -> streamWorkPackages(projectId, query).collectList().block());
+    }
+    
+    /**
+     * Stream the work packages in a project that match the query, page by page.
+     * The next page is requested only when the previous one has been consumed,
+     * so memory use does not grow with the project size.
+     */
+    public Flux<WorkPackage> streamWorkPackages(String projectId, WorkPackageQuery query) {
+        return openWorkPackageStream(projectId, query).flatMapMany(Function.identity());
+    }
+    
+    /**
+     * Fetch the first page of matching work packages and complete with a stream that
+     * starts with it and reads the remaining pages lazily, like streamWorkPackages.
+     */
+    public Mono<Flux<WorkPackage>> openWorkPackageStream(String projectId, WorkPackageQuery query) {
+        return fetchWorkPackagePage(projectId, query, 1)
+                .map(first -> Flux.just(first)
+                        .expand(page -> page.hasNext()
+                                ? fetchWorkPackagePage(projectId, query, page.offset() + 1)
+                                : Mono.empty())
+                        .concatMapIterable(Page::elements, 1));
+    }
+    
+    /**
+     * Stream the matching work packages one page at a time, e.g. to write each page out
+     * before the next one is requested
+     */
+    public Flux<List<WorkPackage>> streamWorkPackagePages(String projectId, WorkPackageQuery query) {
+        return fetchWorkPackagePage(projectId, query, 1)
+                .expand(page -> page.hasNext()
+                        ? fetchWorkPackagePage(projectId, query, page.offset() + 1)
+                        : Mono.empty())
+                .map(Page::elements);
+    }
+    
+    /**
+     * Stream the relations that involve any of the work packages, page by page.
+     * The IDs are queried in chunks, so a relation between two chunks is emitted twice.
+     */
+    public Flux<Relation> streamRelations(Collection<Integer> workPackageIds) {
+        List<Integer> ids = List.copyOf(workPackageIds);
+        List<String> chunkFilters = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += PAGE_SIZE) {
+            chunkFilters.add(involvedFilterJson(ids.subList(start, Math.min(start + PAGE_SIZE, ids.size()))));
+        }
+        return Flux.fromIterable(chunkFilters)
+                .concatMap(filters -> fetchRelationPage(filters, 1)
+                        .expand(page -> page.hasNext() ? fetchRelationPage(filters, page.offset() + 1) : Mono.empty())
+                        .concatMapIterable(Page::elements, 1));
+    }
+    
+    private Mono<Page<Relation>> fetchRelationPage(String filters, int offset) {
+        return openProjectWebClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/relations")
+                        .queryParam("filters", "{filters}")
+                        .queryParam("offset", offset)
+                        .queryParam("pageSize", PAGE_SIZE)
+                        .build(filters))
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(response -> parsePage(response, Relation.class, "relations", offset, PAGE_SIZE))
+                .onErrorMap(WebClientResponseException.class, e -> {
+                    log.error("Failed to list relations: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
+                    return new RuntimeException("Failed to list relations: " + e.getMessage(), e);
+                });
+    }
+    
+    /**
+     * Get the work packages with the given IDs, open and closed, from all projects. The IDs
+     * are queried with an id filter in chunks of ID_CHUNK_SIZE, up to {@code concurrency}
+     * chunks at a time. Emits in no particular order; unknown or invisible IDs are skipped.
+     */
+    public Flux<WorkPackage> getWorkPackages(Collection<Integer> workPackageIds, int concurrency) {
+        List<Integer> ids = workPackageIds.stream().distinct().toList();
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += ID_CHUNK_SIZE) {
+            chunks.add(ids.subList(start, Math.min(start + ID_CHUNK_SIZE, ids.size())));
+        }
+        return Flux.fromIterable(chunks)
+                .flatMap(chunk -> openProjectWebClient.get()
+                        .uri(uriBuilder -> uriBuilder.path("/work_packages")
+                                .queryParam("filters", "{filters}")
+                                .queryParam("pageSize", chunk.size())
+                                .build(idFilterJson(chunk)))
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .map(response -> parsePage(response, WorkPackage.class, "work packages", 1, chunk.size()))
+                        .onErrorMap(WebClientResponseException.class, e -> {
+                            log.error("Failed to get work packages: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
+                            return new RuntimeException("Failed to get work packages: " + e.getMessage(), e);
+                        }), concurrency)
+                .concatMapIterable(Page::elements);
+    }
+    
+    private String idFilterJson(List<Integer> workPackageIds) {
+        ObjectNode id = objectMapper.createObjectNode();
+        id.put("operator", "=");
+        ArrayNode values = id.putArray("values");
+        workPackageIds.forEach(value -> values.add(value.toString()));
+        ArrayNode filters = objectMapper.createArrayNode();
+        filters.addObject().set("id", id);
+        return filters.toString();
+    }
+    
+    private String involvedFilterJson(List<Integer> workPackageIds) {
+        ObjectNode involved = objectMapper.createObjectNode();
+        involved.put("operator", "=");
+        ArrayNode values = involved.putArray("values");
+        workPackageIds.forEach(id -> values.add(id.toString()));
+        ArrayNode filters = objectMapper.createArrayNode();
+        filters.addObject().set("involved", involved);
+        return filters.toString();
+    }
+    
+    /**
+     * Count the work packages matching the query without transferring them
+     */
+    public int countWorkPackages(String projectId, WorkPackageQuery query) {
         try {
-            String typeHref = typeId != null ? "/api/v3/types/" + typeId : "/api/v3/types/1";
-            
-            String body = """
-                {
-                    "subject": "%s",
-                    "description": { "raw": "%s" },
-                    "startDate": %s,
-                    "dueDate": %s,
-                    "scheduleManually": true,
-                    "_links": {
-                        "type": { "href": "%s" }
-                    }
-                }
-                """.formatted(
-                    escapeJson(subject),
-                    escapeJson(description != null ? description : ""),
-                    startDate != null ? "\"" + startDate + "\"" : "null",
-                    dueDate != null ? "\"" + dueDate + "\"" : "null",
-                    typeHref
-                );
+            String response = openProjectWebClient.get()
+                    .uri(uriBuilder -> workPackagesUri(uriBuilder, projectId, query, 1, 1, null))
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block();
             
-            log.debug("Creating work package in project {}: {}", projectId, body);
+            return objectMapper.readTree(response).path("total").asInt();
             
-            return openProjectWebClient.post()
-                    .uri("/projects/{projectId}/work_packages", projectId)
-                    .bodyValue(body)
+        } catch (WebClientResponseException e) {
+            log.error("Failed to count work packages for project {}: {} - {}", 
+                    projectId, e.getStatusCode(), e.getResponseBodyAsString());
+            throw new RuntimeException("Failed to count work packages: " + e.getMessage(), e);
+        } catch (Exception e) {
+            log.error("Failed to parse work packages response", e);
+            throw new RuntimeException("Failed to parse work packages: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Count the work packages matching the query per value of a grouping attribute
+     * (e.g. "status"), using OpenProject's groupBy so no work packages are transferred.
+     * Empty if the server does not return groups for this attribute.
+     */
+    public Optional<Map<String, Integer>> countWorkPackagesGroupedBy(String projectId, WorkPackageQuery query, 
+                                                                      String groupBy) {
+        try {
+            String response = openProjectWebClient.get()
+                    .uri(uriBuilder -> workPackagesUri(uriBuilder, projectId, query, 1, 1, groupBy))
                     .retrieve()
-                    .bodyToMono(WorkPackage.class)
+                    .bodyToMono(String.class)
                     .block();
-                    
+            
+            JsonNode groups = objectMapper.readTree(response).path("groups");
+            if (!groups.isArray()) {
+                return Optional.empty();
+            }
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (JsonNode group : groups) {
+                String value = group.path("value").isNull() || group.path("value").isMissingNode()
+                        ? "(none)" : group.path("value").asText();
+                counts.merge(value, group.path("count").asInt(), Integer::sum);
+            }
+            return Optional.of(counts);
+            
         } catch (WebClientResponseException e) {
-            log.error("Failed to create work package in project {}: {} - {}", 
-                    projectId, e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Failed to create work package: " + e.getMessage(), e);
+            log.error("Failed to group work packages for project {} by {}: {} - {}", 
+                    projectId, groupBy, e.getStatusCode(), e.getResponseBodyAsString());
+            throw new RuntimeException("Failed to group work packages: " + e.getMessage(), e);
+        } catch (Exception e) {
+            log.error("Failed to parse work packages response", e);
+            throw new RuntimeException("Failed to parse work packages: " + e.getMessage(), e);
+        }
+    }
+    
+    private Mono<Page<WorkPackage>> fetchWorkPackagePage(String projectId, WorkPackageQuery query, int offset) {
+        int pageSize = query.getPageSize() != null ? query.getPageSize() : PAGE_SIZE;
+        return openProjectWebClient.get()
+                .uri(uriBuilder -> workPackagesUri(uriBuilder, projectId, query, offset, pageSize, null))
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(response -> parsePage(response, WorkPackage.class, "work packages", offset, pageSize))
+                .onErrorMap(WebClientResponseException.class, e -> {
+                    log.error("Failed to list work packages for project {}: {} - {}", 
+                            projectId, e.getStatusCode(), e.getResponseBodyAsString());
+                    return new RuntimeException("Failed to list work packages: " + e.getMessage(), e);
+                });
+    }
+    
+    private <T> Page<T> parsePage(String response, Class<T> elementType, String what, int offset, int pageSize) {
+        try {
+            JsonNode root = objectMapper.readTree(response);
+            JsonNode elements = root.path("_embedded").path("elements");
+            
+            List<T> result = new ArrayList<>(elements.size());
+            for (JsonNode element : elements) {
+                result.add(objectMapper.treeToValue(element, elementType));
+            }
+            return new Page<>(result, offset, pageSize, root.path("total").asInt(result.size()));
+            
+        } catch (Exception e) {
+            log.error("Failed to parse {} response", what, e);
+            throw new RuntimeException("Failed to parse " + what + ": " + e.getMessage(), e);
         }
     }
     
+    /**
+     * One page of a collection; offset is the 1-based page number
+     */
+    private record Page<T>(List<T> elements, int offset, int pageSize, int total) {
+        
+        boolean hasNext() {
+            return elements.size() == pageSize && (long) offset * pageSize < total;
+        }
+    }
+    
+    private URI workPackagesUri(UriBuilder uriBuilder, String projectId, WorkPackageQuery query) {
+        return workPackagesUri(uriBuilder, projectId, query, null, null, null);
+    }
+    
+    /**
+     * Build the work package collection URI. The filter and sort JSON are passed as
+     * URI variables so they are fully encoded, never spliced into the URI template.
+     */
+    private URI workPackagesUri(UriBuilder uriBuilder, String projectId, WorkPackageQuery query,
+                                Integer offset, Integer pageSize, String groupBy) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("projectId", projectId);
+        uriBuilder.path("/projects/{projectId}/work_packages");
+        if (offset != null) {
+            uriBuilder.queryParam("offset", offset);
+        }
+        if (pageSize != null) {
+            uriBuilder.queryParam("pageSize", pageSize);
+        }
+        if (groupBy != null) {
+            uriBuilder.queryParam("groupBy", "{groupBy}");
+            variables.put("groupBy", groupBy);
+        }
+        if (query.hasFilters()) {
+            uriBuilder.queryParam("filters", "{filters}");
+            variables.put("filters", query.toFiltersJson(objectMapper));
+        }
+        if (query.hasSortBy()) {
+            uriBuilder.queryParam("sortBy", "{sortBy}");
+            variables.put("sortBy", query.toSortByJson(objectMapper));
+        }
+        return uriBuilder.build(variables);
+    }
+    
+    /**
+     * Create a new work package in a project
+     */
+    public WorkPackage createWorkPackage(String projectId, String subject, 
+                                          String startDate, String dueDate,
+                                          String description, Integer typeId) {
+        return createWorkPackageAsync(projectId, subject, startDate, dueDate, description, typeId).block();
+    }
+    
+    /**
+     * Like createWorkPackage, but without blocking, for pipelines that create many work packages
+     */
+    public Mono<WorkPackage> createWorkPackageAsync(String projectId, String subject, 
+                                                    String startDate, String dueDate,
+                                                    String description, Integer typeId) {
+        String typeHref = typeId != null ? "/api/v3/types/" + typeId : "/api/v3/types/1";
+        
+        log.debug("Creating work package '{}' ({} - {}) in project {}", subject, startDate, dueDate, projectId);
+        
+        return openProjectWebClient.post()
+                .uri("/projects/{projectId}/work_packages", projectId)
+                .body(RequestBodyWriter.jsonObject(json -> {
+                    json.writeStringField("subject", subject);
+                    json.writeObjectFieldStart("description");
+                    json.writeStringField("raw", description != null ? description : "");
+                    json.writeEndObject();
+                    json.writeStringField("startDate", startDate);
+                    json.writeStringField("dueDate", dueDate);
+                    json.writeBooleanField("scheduleManually", true);
+                    json.writeObjectFieldStart("_links");
+                    RequestBodyWriter.writeLink(json, "type", typeHref);
+                    json.writeEndObject();
+                }))
+                .retrieve()
+                .bodyToMono(WorkPackage.class)
+                .onErrorMap(WebClientResponseException.class, e -> {
+                    log.error("Failed to create work package in project {}: {} - {}", 
+                            projectId, e.getStatusCode(), e.getResponseBodyAsString());
+                    return new RuntimeException("Failed to create work package: " + e.getMessage(), e);
+                });
+    }
+    
     /**
      * Create a relation (dependency) between two work packages
      * 
@@ -182,58 +511,243 @@ public class OpenProjectClient {
      * @param type Relation type: "follows", "precedes", "blocks", "blocked", "relates", etc.
      */
     public Relation createRelation(int fromId, int toId, String type) {
-        try {
-            String body = """
-                {
-                    "type": "%s",
-                    "_links": {
-                        "from": { "href": "/api/v3/work_packages/%d" },
-                        "to": { "href": "/api/v3/work_packages/%d" }
+        return createRelationAsync(fromId, toId, type).block();
+    }
+    
+    /**
+     * Like createRelation, but without blocking
+     */
+    public Mono<Relation> createRelationAsync(int fromId, int toId, String type) {
+        log.debug("Creating relation: {} {} {}", fromId, type, toId);
+        
+        return openProjectWebClient.post()
+                .uri("/work_packages/{fromId}/relations", fromId)
+                .body(RequestBodyWriter.jsonObject(json -> {
+                    json.writeStringField("type", type);
+                    json.writeObjectFieldStart("_links");
+                    RequestBodyWriter.writeLink(json, "from", "/api/v3/work_packages/" + fromId);
+                    RequestBodyWriter.writeLink(json, "to", "/api/v3/work_packages/" + toId);
+                    json.writeEndObject();
+                }))
+                .retrieve()
+                .bodyToMono(Relation.class)
+                .onErrorMap(WebClientResponseException.class, e -> {
+                    log.error("Failed to create relation from {} to {}: {} - {}", 
+                            fromId, toId, e.getStatusCode(), e.getResponseBodyAsString());
+                    return new RuntimeException("Failed to create relation: " + e.getMessage(), e);
+                });
+    }
+    
+    /**
+     * Change fields of a work package. Null arguments leave the field as it is.
+     * 
+     * @param lockVersion the lock version the changes are based on; OpenProject rejects
+     *                    the update with 409 if the work package changed in between
+     */
+    public Mono<WorkPackage> updateWorkPackageAsync(int workPackageId, int lockVersion, String subject,
+                                                    String startDate, String dueDate,
+                                                    String description, Integer typeId) {
+        log.debug("Updating work package {} (lock version {})", workPackageId, lockVersion);
+        
+        return openProjectWebClient.patch()
+                .uri("/work_packages/{id}", workPackageId)
+                .body(RequestBodyWriter.jsonObject(json -> {
+                    json.writeNumberField("lockVersion", lockVersion);
+                    if (subject != null) {
+                        json.writeStringField("subject", subject);
                     }
-                }
-                """.formatted(type, fromId, toId);
-            
-            log.debug("Creating relation: {}", body);
-            
-            return openProjectWebClient.post()
-                    .uri("/work_packages/{fromId}/relations", fromId)
-                    .bodyValue(body)
-                    .retrieve()
-                    .bodyToMono(Relation.class)
-                    .block();
-                    
-        } catch (WebClientResponseException e) {
-            log.error("Failed to create relation from {} to {}: {} - {}", 
-                    fromId, toId, e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Failed to create relation: " + e.getMessage(), e);
-        }
+                    if (description != null) {
+                        json.writeObjectFieldStart("description");
+                        json.writeStringField("raw", description);
+                        json.writeEndObject();
+                    }
+                    if (startDate != null) {
+                        json.writeStringField("startDate", startDate);
+                    }
+                    if (dueDate != null) {
+                        json.writeStringField("dueDate", dueDate);
+                    }
+                    if (typeId != null) {
+                        json.writeObjectFieldStart("_links");
+                        RequestBodyWriter.writeLink(json, "type", "/api/v3/types/" + typeId);
+                        json.writeEndObject();
+                    }
+                }))
+                .retrieve()
+                .bodyToMono(WorkPackage.class)
+                .onErrorMap(WebClientResponseException.class, e -> {
+                    log.error("Failed to update work package {}: {} - {}", 
+                            workPackageId, e.getStatusCode(), e.getResponseBodyAsString());
+                    return new RuntimeException("Failed to update work package: " + e.getMessage(), e);
+                });
+    }
+    
+    /**
+     * Delete a relation by ID
+     */
+    public Mono<Void> deleteRelationAsync(int relationId) {
+        log.debug("Deleting relation {}", relationId);
+        
+        return openProjectWebClient.delete()
+                .uri("/relations/{id}", relationId)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .onErrorMap(WebClientResponseException.class, e -> {
+                    log.error("Failed to delete relation {}: {} - {}", 
+                            relationId, e.getStatusCode(), e.getResponseBodyAsString());
+                    return new RuntimeException("Failed to delete relation: " + e.getMessage(), e);
+                });
     }
     
     /**
      * Delete a work package by ID
      */
     public void deleteWorkPackage(int workPackageId) {
+        deleteWorkPackageAsync(workPackageId).block();
+    }
+    
+    /**
+     * Like deleteWorkPackage, but without blocking
+     */
+    public Mono<Void> deleteWorkPackageAsync(int workPackageId) {
+        return openProjectWebClient.delete()
+                .uri("/work_packages/{id}", workPackageId)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .onErrorMap(WebClientResponseException.class, e -> {
+                    log.error("Failed to delete work package {}: {} - {}", 
+                            workPackageId, e.getStatusCode(), e.getResponseBodyAsString());
+                    return new RuntimeException("Failed to delete work package: " + e.getMessage(), e);
+                });
+    }
+    
+    /**
+     * List all work package types
+     */
+    public List<Type> listTypes() {
+        return listAll("/types", Type.class, "types");
+    }
+    
+    /**
+     * List all work package statuses
+     */
+    public List<Status> listStatuses() {
+        return listAll("/statuses", Status.class, "statuses");
+    }
+    
+    /**
+     * List all work package priorities
+     */
+    public List<Priority> listPriorities() {
+        return listAll("/priorities", Priority.class, "priorities");
+    }
+    
+    /**
+     * List all project memberships visible to the API user
+     */
+    public List<Membership> listMemberships() {
+        return listAll("/memberships", Membership.class, "memberships");
+    }
+    
+    /**
+     * Replace a project in the remembered read results, e.g. after a webhook reported a change
+     */
+    @SuppressWarnings("unchecked")
+    public void rememberProject(Project project) {
+        if (project == null || project.getId() == null) {
+            return;
+        }
+        synchronized (lastKnown) {
+            LastKnown<List<Project>> projects = (LastKnown<List<Project>>) lastKnown.get("projects");
+            if (projects != null) {
+                List<Project> updated = new ArrayList<>(projects.value());
+                updated.removeIf(known -> project.getId().equals(known.getId()));
+                updated.add(project);
+                lastKnown.put("projects", new LastKnown<>(updated, projects.fetchedAt(), false));
+            }
+        }
+    }
+    
+    /**
+     * Forget remembered work package lists that contain the work package or belong to one of
+     * the projects. A changed work package may no longer match a list's filters, so the lists
+     * are dropped rather than updated.
+     */
+    public void forgetWorkPackage(Integer workPackageId, Collection<String> projectIdsOrIdentifiers) {
+        synchronized (lastKnown) {
+            lastKnown.entrySet().removeIf(entry -> entry.getKey().startsWith("work_packages:")
+                    && (projectIdsOrIdentifiers.stream()
+                            .anyMatch(project -> entry.getKey().startsWith("work_packages:" + project + ":"))
+                        || ((List<?>) entry.getValue().value()).stream()
+                            .anyMatch(wp -> workPackageId != null
+                                    && workPackageId.equals(((WorkPackage) wp).getId()))));
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> LastKnown<T> orLastKnown(String key, Supplier<T> read) {
         try {
-            openProjectWebClient.delete()
-                    .uri("/work_packages/{id}", workPackageId)
-                    .retrieve()
-                    .bodyToMono(Void.class)
-                    .block();
-                    
-        } catch (WebClientResponseException e) {
-            log.error("Failed to delete work package {}: {} - {}", 
-                    workPackageId, e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Failed to delete work package: " + e.getMessage(), e);
+            LastKnown<T> result = new LastKnown<>(read.get(), Instant.now(), false);
+            synchronized (lastKnown) {
+                lastKnown.put(key, result);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (!CircuitOpenException.isCause(e)) {
+                throw e;
+            }
+            LastKnown<T> known;
+            synchronized (lastKnown) {
+                known = (LastKnown<T>) lastKnown.get(key);
+            }
+            if (known == null) {
+                throw e;
+            }
+            log.warn("Serving stale {} from {}: {}", key, known.fetchedAt(), e.getMessage());
+            return known.asStale();
         }
     }
     
-    private String escapeJson(String input) {
-        if (input == null) return "";
-        return input
-                .replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+    /**
+     * Read all pages of a collection resource
+     */
+    private <T> List<T> listAll(String path, Class<T> elementType, String what) {
+        try {
+            List<T> result = new ArrayList<>();
+            int offset = 1;
+            while (true) {
+                int page = offset;
+                String response = openProjectWebClient.get()
+                        .uri(uriBuilder -> uriBuilder.path(path)
+                                .queryParam("offset", page)
+                                .queryParam("pageSize", PAGE_SIZE)
+                                .build())
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .block();
+                
+                JsonNode root = objectMapper.readTree(response);
+                JsonNode elements = root.path("_embedded").path("elements");
+                for (JsonNode element : elements) {
+                    result.add(objectMapper.treeToValue(element, elementType));
+                }
+                
+                int total = root.path("total").asInt(result.size());
+                if (elements.size() < PAGE_SIZE || result.size() >= total) {
+                    return result;
+                }
+                offset++;
+            }
+            
+        } catch (WebClientResponseException e) {
+            log.error("Failed to list {}: {} - {}", what, e.getStatusCode(), e.getResponseBodyAsString());
+            throw new RuntimeException("Failed to list " + what + ": " + e.getMessage(), e);
+        } catch (CircuitOpenException | CallCancelledException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to parse {} response", what, e);
+            throw new RuntimeException("Failed to parse " + what + ": " + e.getMessage(), e);
+        }
     }
+    
 }
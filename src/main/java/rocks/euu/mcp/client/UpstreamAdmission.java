@@ -0,0 +1,191 @@
+package rocks.euu.mcp.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import rocks.euu.mcp.config.OpenProjectProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control for OpenProject requests, applied as a WebClient filter. At most
+ * openproject.upstream-concurrency requests are in flight, and at most
+ * openproject.session-upstream-concurrency of them for one MCP session, so one client
+ * running a bulk tool cannot take all connections.
+ * 
+ * Waiting requests are served by a self-clocked weighted fair queue: a flow is a session
+ * plus the kind of its tool call, and each request gets a finish tag of
+ * max(virtual time, last tag of its flow) + 1 / weight. Interactive requests weigh four
+ * times as much as those of bulk tools (see {@link CallScope#bulk()}), so a read overtakes
+ * a long queue of plan writes instead of waiting behind it. Requests outside a tool call,
+ * e.g. cache refreshes, share the "background" session.
+ * 
+ * A permit is held until the response body is consumed or the exchange fails or is
+ * cancelled. The wait for a permit is recorded in the openproject.upstream.queue.wait timer.
+ */
+@Slf4j
+@Component
+public class UpstreamAdmission implements ExchangeFilterFunction {
+    
+    static final String BACKGROUND_SESSION = "background";
+    public static final String QUEUE_WAIT_METRIC = "openproject.upstream.queue.wait";
+    
+    private static final double INTERACTIVE_WEIGHT = 4;
+    private static final double BULK_WEIGHT = 1;
+    private static final Duration LONG_WAIT = Duration.ofSeconds(1);
+    
+    private final int limit;
+    private final int sessionLimit;
+    private final Timer interactiveWait;
+    private final Timer bulkWait;
+    
+    // Guarded by this
+    private final TreeSet<Waiter> queue = new TreeSet<>(
+            Comparator.comparingDouble(Waiter::finish).thenComparingLong(Waiter::seq));
+    private final Map<String, Integer> inFlight = new HashMap<>();
+    private final Map<String, Double> lastFinish = new HashMap<>();
+    private int total;
+    private double virtualTime;
+    private long seq;
+    
+    public UpstreamAdmission(OpenProjectProperties properties, MeterRegistry meterRegistry) {
+        this.limit = Math.max(properties.getUpstreamConcurrency(), 1);
+        this.sessionLimit = Math.max(properties.getSessionUpstreamConcurrency(), 1);
+        this.interactiveWait = queueWaitTimer(meterRegistry, "interactive");
+        this.bulkWait = queueWaitTimer(meterRegistry, "bulk");
+    }
+    
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context -> {
+            CallScope scope = context.getOrDefault(CallScope.KEY, null);
+            String session = scope != null && scope.sessionId() != null ? scope.sessionId() : BACKGROUND_SESSION;
+            boolean bulk = scope != null && scope.bulk();
+            return admit(session, bulk).flatMap(permit -> next.exchange(request)
+                    .map(response -> response.mutate()
+                            .body(body -> body.doFinally(signal -> permit.release()))
+                            .build())
+                    .doOnError(e -> permit.release())
+                    .doOnCancel(permit::release));
+        });
+    }
+    
+    /**
+     * Number of requests waiting for a permit
+     */
+    public synchronized int queued() {
+        return queue.size();
+    }
+    
+    /**
+     * Number of requests holding a permit
+     */
+    public synchronized int inFlight() {
+        return total;
+    }
+    
+    private Mono<Permit> admit(String session, boolean bulk) {
+        return Mono.create(sink -> {
+            Waiter waiter;
+            synchronized (this) {
+                String flow = session + (bulk ? "/bulk" : "/interactive");
+                double finish = Math.max(virtualTime, lastFinish.getOrDefault(flow, 0.0))
+                        + 1 / (bulk ? BULK_WEIGHT : INTERACTIVE_WEIGHT);
+                lastFinish.put(flow, finish);
+                waiter = new Waiter(new Permit(session), bulk, finish, seq++, sink, System.nanoTime());
+                queue.add(waiter);
+            }
+            sink.onCancel(() -> {
+                boolean wasQueued;
+                synchronized (this) {
+                    wasQueued = queue.remove(waiter);
+                }
+                if (!wasQueued) {
+                    // Admitted while being cancelled, the permit may not reach the exchange
+                    waiter.permit().release();
+                }
+            });
+            dispatch();
+        });
+    }
+    
+    /**
+     * Admit waiters in finish tag order, skipping those whose session is at its limit.
+     * The sinks are completed outside the lock, since that starts their exchanges.
+     */
+    private void dispatch() {
+        List<Waiter> admitted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Waiter> waiters = queue.iterator();
+            while (total < limit && waiters.hasNext()) {
+                Waiter waiter = waiters.next();
+                String session = waiter.permit().session;
+                if (inFlight.getOrDefault(session, 0) < sessionLimit) {
+                    waiters.remove();
+                    total++;
+                    inFlight.merge(session, 1, Integer::sum);
+                    virtualTime = Math.max(virtualTime, waiter.finish());
+                    admitted.add(waiter);
+                }
+            }
+            // Tags at or below the virtual time no longer hold their flow back
+            lastFinish.values().removeIf(finish -> finish <= virtualTime);
+        }
+        for (Waiter waiter : admitted) {
+            long waited = System.nanoTime() - waiter.enqueued();
+            (waiter.bulk() ? bulkWait : interactiveWait).record(waited, TimeUnit.NANOSECONDS);
+            if (waited > LONG_WAIT.toNanos()) {
+                log.debug("OpenProject request of session {} waited {} ms for admission",
+                        waiter.permit().session, TimeUnit.NANOSECONDS.toMillis(waited));
+            }
+            waiter.sink().success(waiter.permit());
+        }
+    }
+    
+    private static Timer queueWaitTimer(MeterRegistry meterRegistry, String kind) {
+        return Timer.builder(QUEUE_WAIT_METRIC)
+                .description("Wait of OpenProject requests for an admission permit")
+                .tag("class", kind)
+                .register(meterRegistry);
+    }
+    
+    private record Waiter(Permit permit, boolean bulk, double finish, long seq, MonoSink<Permit> sink, long enqueued) {
+    }
+    
+    private class Permit {
+        
+        private final String session;
+        private final AtomicBoolean released = new AtomicBoolean();
+        
+        Permit(String session) {
+            this.session = session;
+        }
+        
+        void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            synchronized (UpstreamAdmission.this) {
+                total--;
+                inFlight.computeIfPresent(session, (key, count) -> count > 1 ? count - 1 : null);
+            }
+            dispatch();
+        }
+    }
+}
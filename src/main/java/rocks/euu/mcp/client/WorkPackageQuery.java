@@ -0,0 +1,131 @@
+package rocks.euu.mcp.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filters and sort order for work package collection requests.
+ * 
+ * Translated into OpenProject's "filters" and "sortBy" query parameters, so
+ * filtering happens on the server and only matching work packages are returned.
+ * All criteria are optional; an empty query sends no parameters at all.
+ */
+@Data
+public class WorkPackageQuery {
+    
+    /**
+     * "open", "closed", "all", or null for explicit status IDs. Without any status
+     * filter OpenProject itself only returns open work packages.
+     */
+    private String statusState;
+    private List<Integer> statusIds = new ArrayList<>();
+    private List<Integer> typeIds = new ArrayList<>();
+    private List<Integer> assigneeIds = new ArrayList<>();
+    private boolean assigneeMe;
+    
+    /**
+     * Date bounds in YYYY-MM-DD format, each inclusive and optional
+     */
+    private String startDateFrom;
+    private String startDateTo;
+    private String dueDateFrom;
+    private String dueDateTo;
+    
+    private String subjectContains;
+    
+    /**
+     * Sort criteria as [field, "asc"|"desc"] pairs, e.g. ["dueDate", "asc"]
+     */
+    private List<String[]> sortBy = new ArrayList<>();
+    
+    /**
+     * Page size for streamed reads, null for the client default
+     */
+    private Integer pageSize;
+    
+    public static WorkPackageQuery none() {
+        return new WorkPackageQuery();
+    }
+    
+    public boolean hasFilters() {
+        return statusState != null || !statusIds.isEmpty() || !typeIds.isEmpty() || !assigneeIds.isEmpty() || assigneeMe
+                || startDateFrom != null || startDateTo != null || dueDateFrom != null || dueDateTo != null
+                || subjectContains != null;
+    }
+    
+    public boolean hasSortBy() {
+        return !sortBy.isEmpty();
+    }
+    
+    public WorkPackageQuery sortBy(String field, String direction) {
+        sortBy.add(new String[] { field, direction });
+        return this;
+    }
+    
+    /**
+     * Build the "filters" JSON, e.g. [{"status":{"operator":"o","values":[]}}]
+     */
+    public String toFiltersJson(ObjectMapper objectMapper) {
+        ArrayNode filters = objectMapper.createArrayNode();
+        if ("open".equalsIgnoreCase(statusState)) {
+            addFilter(filters, "status", "o", List.of());
+        } else if ("closed".equalsIgnoreCase(statusState)) {
+            addFilter(filters, "status", "c", List.of());
+        } else if ("all".equalsIgnoreCase(statusState)) {
+            addFilter(filters, "status", "*", List.of());
+        } else if (!statusIds.isEmpty()) {
+            addFilter(filters, "status", "=", toStrings(statusIds));
+        }
+        if (!typeIds.isEmpty()) {
+            addFilter(filters, "type", "=", toStrings(typeIds));
+        }
+        if (!assigneeIds.isEmpty() || assigneeMe) {
+            List<String> values = new ArrayList<>(toStrings(assigneeIds));
+            if (assigneeMe) {
+                values.add("me");
+            }
+            addFilter(filters, "assignee", "=", values);
+        }
+        if (startDateFrom != null || startDateTo != null) {
+            addFilter(filters, "startDate", "<>d", dateRange(startDateFrom, startDateTo));
+        }
+        if (dueDateFrom != null || dueDateTo != null) {
+            addFilter(filters, "dueDate", "<>d", dateRange(dueDateFrom, dueDateTo));
+        }
+        if (subjectContains != null) {
+            addFilter(filters, "subject", "~", List.of(subjectContains));
+        }
+        return filters.toString();
+    }
+    
+    /**
+     * Build the "sortBy" JSON, e.g. [["dueDate","asc"]]
+     */
+    public String toSortByJson(ObjectMapper objectMapper) {
+        ArrayNode sort = objectMapper.createArrayNode();
+        for (String[] criterion : sortBy) {
+            sort.addArray().add(criterion[0]).add(criterion[1]);
+        }
+        return sort.toString();
+    }
+    
+    private static void addFilter(ArrayNode filters, String name, String operator, List<String> values) {
+        ObjectNode filter = filters.addObject().putObject(name);
+        filter.put("operator", operator);
+        ArrayNode valueArray = filter.putArray("values");
+        values.forEach(valueArray::add);
+    }
+    
+    private static List<String> dateRange(String from, String to) {
+        return List.of(from != null ? from : "", to != null ? to : "");
+    }
+    
+    private static List<String> toStrings(List<Integer> ids) {
+        return ids.stream().map(String::valueOf).toList();
+    }
+}
@@ -0,0 +1,125 @@
+package rocks.euu.mcp.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import rocks.euu.mcp.client.CallScope;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every tools/call request on the MCP endpoint a {@link CallScope} and cancels it when
+ * the client sends notifications/cancelled for the request or drops the connection.
+ * 
+ * The MCP SDK does not handle notifications/cancelled itself, and the JSON-RPC request id is
+ * not visible to tool handlers, so the messages are read here, before the SDK, and the scope
+ * reaches the handler through the Reactor context. Bodies are buffered for that, up to
+ * openproject.max-request-bytes.
+ */
+@Slf4j
+@Component
+public class McpCancellationFilter implements WebFilter {
+    
+    private static final String SESSION_HEADER = "Mcp-Session-Id";
+    
+    private final String mcpEndpoint;
+    private final OpenProjectProperties properties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, CallScope> calls = new ConcurrentHashMap<>();
+    
+    public McpCancellationFilter(
+            @Value("${spring.ai.mcp.server.streamable-http.mcp-endpoint:/mcp}") String mcpEndpoint,
+            OpenProjectProperties properties) {
+        this.mcpEndpoint = mcpEndpoint;
+        this.properties = properties;
+    }
+    
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.POST || !mcpEndpoint.equals(request.getPath().value())) {
+            return chain.filter(exchange);
+        }
+        
+        return DataBufferUtils.join(request.getBody(), properties.getMaxRequestBytes())
+                .map(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                })
+                .defaultIfEmpty(new byte[0])
+                .onErrorResume(DataBufferLimitException.class, e -> {
+                    log.warn("Rejected a request over {} bytes on {}", properties.getMaxRequestBytes(), mcpEndpoint);
+                    exchange.getResponse().setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+                    return exchange.getResponse().setComplete().then(Mono.empty());
+                })
+                .flatMap(bytes -> {
+                    // The body can only be read once, the SDK gets a copy
+                    ServerHttpRequest replay = new ServerHttpRequestDecorator(request) {
+                        @Override
+                        public Flux<DataBuffer> getBody() {
+                            return Flux.defer(() -> Flux.just(exchange.getResponse().bufferFactory().wrap(bytes)));
+                        }
+                    };
+                    return filter(exchange.mutate().request(replay).build(), chain,
+                            request.getHeaders().getFirst(SESSION_HEADER), parse(bytes));
+                });
+    }
+    
+    private Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain, String sessionId, JsonNode message) {
+        String method = message.path("method").asText();
+        if ("notifications/cancelled".equals(method)) {
+            JsonNode params = message.path("params");
+            CallScope scope = calls.get(callKey(sessionId, params.path("requestId")));
+            if (scope != null) {
+                String reason = params.path("reason").asText(null);
+                log.info("Tool call {} cancelled by the client{}", params.path("requestId"),
+                        reason != null ? ": " + reason : "");
+                scope.cancel("Tool call cancelled by the client" + (reason != null ? ": " + reason : ""));
+            }
+            return chain.filter(exchange);
+        }
+        if (!"tools/call".equals(method) || !message.hasNonNull("id")) {
+            return chain.filter(exchange);
+        }
+        
+        String key = callKey(sessionId, message.get("id"));
+        CallScope scope = new CallScope(properties.getToolCallTimeout(), sessionId,
+                McpToolConfig.isBulk(message.path("params").path("name").asText()));
+        calls.put(key, scope);
+        return chain.filter(exchange)
+                .doOnCancel(() -> scope.cancel("Client disconnected"))
+                .doFinally(signal -> calls.remove(key, scope))
+                .contextWrite(context -> context.put(CallScope.KEY, scope));
+    }
+    
+    private JsonNode parse(byte[] bytes) {
+        try {
+            return bytes.length > 0 ? objectMapper.readTree(bytes) : objectMapper.missingNode();
+        } catch (IOException e) {
+            // Not ours to reject, the SDK answers with a parse error
+            return objectMapper.missingNode();
+        }
+    }
+    
+    private static String callKey(String sessionId, JsonNode requestId) {
+        return sessionId + "/" + requestId.asText();
+    }
+}
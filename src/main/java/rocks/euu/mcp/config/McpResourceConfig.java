@@ -0,0 +1,66 @@
+package rocks.euu.mcp.config;
+
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.spec.McpSchema;
+import rocks.euu.mcp.resources.OpenProjectResources;
+import rocks.euu.mcp.resources.ServerMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+public class McpResourceConfig {
+
+    /**
+     * The list of all projects and the server metrics, picked up by the MCP server auto-configuration
+     */
+    @Bean
+    public List<McpServerFeatures.SyncResourceSpecification> openProjectResourceSpecifications(
+            OpenProjectResources resources, ServerMetrics serverMetrics) {
+        McpSchema.Resource projects = McpSchema.Resource.builder()
+                .uri(OpenProjectResources.PROJECTS_URI)
+                .name("projects")
+                .description("All projects visible to the API user")
+                .mimeType(OpenProjectResources.MIME_TYPE)
+                .build();
+        McpSchema.Resource metrics = McpSchema.Resource.builder()
+                .uri(ServerMetrics.METRICS_URI)
+                .name("metrics")
+                .description("OpenProject requests in flight and queued, and their wait for admission")
+                .mimeType(OpenProjectResources.MIME_TYPE)
+                .build();
+
+        return List.of(
+                new McpServerFeatures.SyncResourceSpecification(projects,
+                        (exchange, request) -> resources.read(request.uri())),
+                new McpServerFeatures.SyncResourceSpecification(metrics,
+                        (exchange, request) -> serverMetrics.read()));
+    }
+
+    /**
+     * One project and the work packages of one project, by project ID or identifier
+     */
+    @Bean
+    public List<McpServerFeatures.SyncResourceTemplateSpecification> openProjectResourceTemplateSpecifications(
+            OpenProjectResources resources) {
+        McpSchema.ResourceTemplate project = McpSchema.ResourceTemplate.builder()
+                .uriTemplate(OpenProjectResources.PROJECT_URI_TEMPLATE)
+                .name("project")
+                .description("A project by ID or identifier")
+                .mimeType(OpenProjectResources.MIME_TYPE)
+                .build();
+        McpSchema.ResourceTemplate workPackages = McpSchema.ResourceTemplate.builder()
+                .uriTemplate(OpenProjectResources.WORK_PACKAGES_URI_TEMPLATE)
+                .name("work_packages")
+                .description("All work packages of a project, open and closed, in ID order")
+                .mimeType(OpenProjectResources.MIME_TYPE)
+                .build();
+
+        return List.of(
+                new McpServerFeatures.SyncResourceTemplateSpecification(project,
+                        (exchange, request) -> resources.read(request.uri())),
+                new McpServerFeatures.SyncResourceTemplateSpecification(workPackages,
+                        (exchange, request) -> resources.read(request.uri())));
+    }
+}
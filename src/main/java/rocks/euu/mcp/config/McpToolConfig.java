@@ -1,18 +1,101 @@
 package rocks.euu.mcp.config;
 
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.spec.McpSchema;
+import rocks.euu.mcp.client.CallScope;
 import rocks.euu.mcp.tools.OpenProjectTools;
-import org.springframework.ai.tool.ToolCallbackProvider;
+import rocks.euu.mcp.tools.ProgressReporter;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.McpToolUtils;
+import org.springframework.ai.model.ModelOptionsUtils;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Configuration
 public class McpToolConfig {
-    
+
+    /**
+     * Tools that make many OpenProject requests; their requests yield to those of other tools
+     */
+    private static final Set<String> BULK_TOOLS = Set.of(
+            "createProjectPlan", "applyProjectPlan", "importWorkPackages", "copyPlan", "exportWorkPackages");
+
+    /**
+     * Registers the tools as MCP tool specifications. Unlike the default ToolCallbackProvider
+     * conversion, the call handler also passes the request's progress token into the ToolContext,
+     * so long-running tools can send progress notifications. Every call runs in an
+     * "mcp.tool.call" observation, the parent of the OpenProject HTTP exchanges it makes, and in a
+     * {@link CallScope} that aborts those exchanges on cancellation or after openproject.tool-call-timeout.
+     */
     @Bean
-    public ToolCallbackProvider openProjectToolCallbackProvider(OpenProjectTools tools) {
-        return MethodToolCallbackProvider.builder()
+    public List<McpServerFeatures.SyncToolSpecification> openProjectToolSpecifications(OpenProjectTools tools,
+            ObservationRegistry observationRegistry, OpenProjectProperties properties) {
+        ToolCallback[] callbacks = MethodToolCallbackProvider.builder()
                 .toolObjects(tools)
+                .build()
+                .getToolCallbacks();
+
+        return Arrays.stream(callbacks)
+                .map(callback -> toToolSpecification(callback, observationRegistry, properties))
+                .toList();
+    }
+
+    private McpServerFeatures.SyncToolSpecification toToolSpecification(ToolCallback callback,
+            ObservationRegistry observationRegistry, OpenProjectProperties properties) {
+        McpSchema.Tool tool = McpToolUtils.toSyncToolSpecification(callback).tool();
+
+        return McpServerFeatures.SyncToolSpecification.builder()
+                .tool(tool)
+                .callHandler((exchange, request) -> {
+                    Map<String, Object> context = new HashMap<>();
+                    context.put(McpToolUtils.TOOL_CONTEXT_MCP_EXCHANGE_KEY, exchange);
+                    if (request.meta() != null && request.meta().get("progressToken") != null) {
+                        context.put(ProgressReporter.PROGRESS_TOKEN_KEY, request.meta().get("progressToken"));
+                    }
+
+                    Observation observation = Observation.createNotStarted("mcp.tool.call", observationRegistry)
+                            .contextualName("tool " + tool.name())
+                            .lowCardinalityKeyValue("mcp.tool", tool.name())
+                            .highCardinalityKeyValue("mcp.session", String.valueOf(exchange.sessionId()))
+                            .start();
+                    // Set up by McpCancellationFilter for HTTP requests, so notifications/cancelled can reach it
+                    CallScope callScope = CallScope.current()
+                            .orElseGet(() -> new CallScope(properties.getToolCallTimeout(), exchange.sessionId(),
+                                    isBulk(tool.name())));
+                    try (Observation.Scope scope = observation.openScope()) {
+                        String arguments = ModelOptionsUtils.toJsonString(request.arguments());
+                        observation.event(Observation.Event.of("arguments.encoded"));
+                        String result = callScope.run(() -> callback.call(arguments, new ToolContext(context)));
+                        observation.event(Observation.Event.of("tool.returned"));
+                        return McpSchema.CallToolResult.builder()
+                                .addTextContent(result)
+                                .isError(false)
+                                .build();
+                    } catch (Exception e) {
+                        observation.error(e);
+                        String message = callScope.isDone() ? callScope.exception().getMessage() : e.getMessage();
+                        return McpSchema.CallToolResult.builder()
+                                .addTextContent(message != null ? message : e.getClass().getName())
+                                .isError(true)
+                                .build();
+                    } finally {
+                        observation.stop();
+                    }
+                })
                 .build();
     }
+
+    static boolean isBulk(String toolName) {
+        return BULK_TOOLS.contains(toolName);
+    }
 }
@@ -0,0 +1,47 @@
+package rocks.euu.mcp.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.web.reactive.WebHttpHandlerBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ObservationConfig {
+
+    /**
+     * Registry for the tool call and HTTP client observations. Without tracing enabled
+     * no handler is registered and all observations are no-ops.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public ObservationRegistry observationRegistry(OpenProjectProperties properties) {
+        ObservationRegistry registry = ObservationRegistry.create();
+        if (properties.isTracingEnabled()) {
+            registry.observationConfig().observationHandler(new TraceLogHandler());
+        }
+        return registry;
+    }
+
+    /**
+     * Observes the HTTP requests to the server ("http.server.requests"), so the request to
+     * /mcp is the root span and the parent of the tool call. Spring Boot only wires this
+     * with actuator.
+     */
+    @Bean
+    public WebHttpHandlerBuilderCustomizer serverObservationCustomizer(ObservationRegistry observationRegistry) {
+        return builder -> builder.observationRegistry(observationRegistry);
+    }
+
+    /**
+     * Registry for metrics such as openproject.upstream.queue.wait, unless one is configured,
+     * e.g. by Spring Boot Actuator. The resource openproject://metrics reads it.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+}
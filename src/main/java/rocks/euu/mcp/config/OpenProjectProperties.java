@@ -5,6 +5,8 @@ import org.springframework.context.annotation.Configuration;
 
 import lombok.Data;
 
+import java.time.Duration;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "openproject")
@@ -20,4 +22,123 @@ public class OpenProjectProperties {
      * My Account -> Access Tokens -> API
      */
     private String apiKey;
+    
+    /**
+     * How often types, statuses, priorities and project members are reloaded
+     */
+    private Duration referenceDataRefresh = Duration.ofMinutes(15);
+    
+    /**
+     * How often a loaded project tree is rebuilt, to pick up projects changed outside
+     * this server when no webhook reports them
+     */
+    private Duration projectTreeRefresh = Duration.ofMinutes(5);
+    
+    /**
+     * How long the work packages of a project are served from memory before they are
+     * scanned again, in case a change was neither made here nor reported by a webhook
+     */
+    private Duration workPackageCacheTtl = Duration.ofMinutes(10);
+    
+    /**
+     * How long results of create calls are remembered by idempotency key
+     */
+    private Duration idempotencyTtl = Duration.ofMinutes(30);
+    
+    /**
+     * Maximum number of remembered idempotency keys
+     */
+    private int idempotencyMaxEntries = 10_000;
+    
+    /**
+     * Approximate maximum size in bytes of the items in one page of a list tool response
+     */
+    private int responseByteBudget = 100_000;
+    
+    /**
+     * How long the remaining pages of a paged list result can be fetched with its cursor
+     */
+    private Duration pageSnapshotTtl = Duration.ofMinutes(5);
+    
+    /**
+     * Maximum number of paged list results kept for their cursors
+     */
+    private int pageSnapshotMaxEntries = 100;
+    
+    /**
+     * Maximum number of projects queried at the same time by cross-project tools
+     */
+    private int fanOutConcurrency = 4;
+    
+    /**
+     * Maximum number of create requests sent at the same time by bulk tools like copyPlan
+     */
+    private int writeConcurrency = 4;
+    
+    /**
+     * Maximum number of requests to OpenProject in flight at the same time, over all sessions
+     */
+    private int upstreamConcurrency = 8;
+    
+    /**
+     * Maximum number of requests to OpenProject in flight at the same time for one MCP session
+     */
+    private int sessionUpstreamConcurrency = 4;
+    
+    /**
+     * Directory the export tool writes its files to
+     */
+    private String exportDirectory = "exports";
+    
+    /**
+     * Directory the import tool reads its files from; the result files are written next to them
+     */
+    private String importDirectory = "imports";
+    
+    /**
+     * Maximum time to wait for a response from OpenProject before the call fails
+     */
+    private Duration requestTimeout = Duration.ofSeconds(30);
+    
+    /**
+     * Maximum time for a whole tool call; OpenProject requests still running then are aborted
+     */
+    private Duration toolCallTimeout = Duration.ofMinutes(5);
+    
+    /**
+     * Maximum size in bytes of a request body on the MCP endpoint; larger requests get 413
+     */
+    private int maxRequestBytes = 1024 * 1024;
+    
+    /**
+     * Number of recent calls per endpoint the circuit breaker looks at
+     */
+    private int circuitWindowSize = 20;
+    
+    /**
+     * Minimum number of calls in the window before the circuit can open
+     */
+    private int circuitMinimumCalls = 10;
+    
+    /**
+     * Failure rate in percent at which the circuit of an endpoint opens
+     */
+    private int circuitFailureRateThreshold = 50;
+    
+    /**
+     * How long an open circuit fails fast before a probe call is let through
+     */
+    private Duration circuitOpenDuration = Duration.ofSeconds(30);
+    
+    /**
+     * Secret of the OpenProject webhook (Administration -> API and webhooks). Webhook calls
+     * without a matching X-OP-Signature are rejected; without a secret all are rejected.
+     */
+    private String webhookSecret;
+    
+    /**
+     * Log a span line per tool call and OpenProject HTTP exchange to the
+     * rocks.euu.mcp.trace logger
+     */
+    private boolean tracingEnabled = false;
 }
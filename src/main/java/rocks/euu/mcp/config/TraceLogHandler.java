@@ -0,0 +1,111 @@
+package rocks.euu.mcp.config;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local trace exporter: logs every finished observation as one span line.
+ *
+ * Child observations (e.g. the HTTP exchanges of a tool call) share the trace id of
+ * their root and name their parent span, so a slow call can be followed offline from
+ * the tool span down to the single requests. Events are logged with their offset from
+ * the span start. Events that arrive after a span was stopped (the HTTP span ends
+ * with the response headers, the body follows later) are added to the parent span.
+ */
+@Slf4j(topic = "rocks.euu.mcp.trace")
+public class TraceLogHandler implements ObservationHandler<Observation.Context> {
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        context.put(Span.class, new Span(parentSpan(context)));
+    }
+
+    @Override
+    public void onEvent(Observation.Event event, Observation.Context context) {
+        Span span = context.get(Span.class);
+        if (span != null) {
+            span.event(context.getContextualName() != null ? context.getContextualName() : context.getName(),
+                    event.getContextualName());
+        }
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        Span span = context.get(Span.class);
+        if (span == null) {
+            return;
+        }
+        double durationMs = span.stop();
+
+        StringJoiner tags = new StringJoiner(", ", "{", "}");
+        for (KeyValue keyValue : context.getLowCardinalityKeyValues()) {
+            tags.add(keyValue.getKey() + "=" + keyValue.getValue());
+        }
+        for (KeyValue keyValue : context.getHighCardinalityKeyValues()) {
+            tags.add(keyValue.getKey() + "=" + keyValue.getValue());
+        }
+
+        log.info("trace={} span={} parent={} name={} contextualName=\"{}\" duration={}ms tags={} events={}{}",
+                span.traceId, span.spanId, span.parent != null ? span.parent.spanId : "-",
+                context.getName(), context.getContextualName(), String.format("%.1f", durationMs), tags,
+                span.events(), context.getError() != null ? " error=\"" + context.getError().getMessage() + "\"" : "");
+    }
+
+    private static Span parentSpan(Observation.Context context) {
+        ObservationView parent = context.getParentObservation();
+        return parent != null ? parent.getContextView().get(Span.class) : null;
+    }
+
+    private static String newId(int bytes) {
+        StringBuilder id = new StringBuilder(bytes * 2);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < bytes; i++) {
+            id.append(String.format("%02x", random.nextInt(256)));
+        }
+        return id.toString();
+    }
+
+    private static final class Span {
+        private final Span parent;
+        private final String traceId;
+        private final String spanId = newId(8);
+        private final long startNanos = System.nanoTime();
+        private final List<String> events = new ArrayList<>();
+        private boolean stopped;
+
+        Span(Span parent) {
+            this.parent = parent;
+            this.traceId = parent != null ? parent.traceId : newId(16);
+        }
+
+        synchronized void event(String spanName, String name) {
+            if (stopped && parent != null) {
+                parent.event(null, spanName + " " + name);
+                return;
+            }
+            events.add(name + "@" + String.format("%.1f", (System.nanoTime() - startNanos) / 1e6) + "ms");
+        }
+
+        synchronized double stop() {
+            stopped = true;
+            return (System.nanoTime() - startNanos) / 1e6;
+        }
+
+        synchronized List<String> events() {
+            return List.copyOf(events);
+        }
+    }
+}
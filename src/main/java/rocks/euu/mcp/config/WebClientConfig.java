@@ -1,8 +1,14 @@
 package rocks.euu.mcp.config;
 
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.util.context.ContextView;
 
 import java.util.Base64;
 
@@ -10,14 +16,33 @@ import java.util.Base64;
 public class WebClientConfig {
     
     @Bean
-    public WebClient openProjectWebClient(OpenProjectProperties properties) {
+    public WebClient openProjectWebClient(OpenProjectProperties properties, ObservationRegistry observationRegistry) {
         String credentials = "apikey:" + properties.getApiKey();
         String encodedCredentials = Base64.getEncoder().encodeToString(credentials.getBytes());
         
+        // Phase events on the HTTP exchange observation: connection.acquired comes after pool
+        // acquisition (and connect + TLS handshake for a new connection), response.headers
+        // marks the first byte from OpenProject, response.body the fully received body.
+        HttpClient httpClient = HttpClient.create()
+                .responseTimeout(properties.getRequestTimeout())
+                .doOnRequest((request, connection) -> phase(request.currentContextView(), "connection.acquired"))
+                .doAfterRequest((request, connection) -> phase(request.currentContextView(), "request.sent"))
+                .doOnResponse((response, connection) -> phase(response.currentContextView(), "response.headers"))
+                .doAfterResponseSuccess((response, connection) -> phase(response.currentContextView(), "response.body"));
+        
         return WebClient.builder()
                 .baseUrl(properties.getBaseUrl() + "/api/v3")
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .observationRegistry(observationRegistry)
                 .defaultHeader("Authorization", "Basic " + encodedCredentials)
                 .defaultHeader("Content-Type", "application/json")
                 .build();
     }
+    
+    private static void phase(ContextView contextView, String name) {
+        Observation observation = contextView.getOrDefault(ObservationThreadLocalAccessor.KEY, null);
+        if (observation != null) {
+            observation.event(Observation.Event.of(name));
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package rocks.euu.mcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Membership {
+    
+    private Integer id;
+    
+    @JsonProperty("_links")
+    private Links links;
+    
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Links {
+        private Link self;
+        private Link project;
+        private Link principal;
+    }
+    
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Link {
+        private String href;
+        private String title;
+    }
+}
@@ -0,0 +1,15 @@
+package rocks.euu.mcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Status {
+    
+    private Integer id;
+    private String name;
+    private Integer position;
+    private Boolean isDefault;
+    private Boolean isClosed;
+}
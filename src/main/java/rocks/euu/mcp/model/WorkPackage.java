@@ -9,6 +9,11 @@ import lombok.Data;
 public class WorkPackage {
     
     private Integer id;
+    
+    /**
+     * Incremented by OpenProject on every change; updates must send the current value
+     */
+    private Integer lockVersion;
     private String subject;
     private Description description;
     
@@ -33,6 +38,8 @@ public class WorkPackage {
         private Link project;
         private Link type;
         private Link status;
+        private Link priority;
+        private Link assignee;
     }
     
     @Data
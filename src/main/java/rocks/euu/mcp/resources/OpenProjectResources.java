@@ -0,0 +1,158 @@
+package rocks.euu.mcp.resources;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.server.McpSyncServer;
+import io.modelcontextprotocol.spec.McpError;
+import io.modelcontextprotocol.spec.McpSchema;
+import rocks.euu.mcp.cache.ProjectTree;
+import rocks.euu.mcp.cache.WorkPackageCache;
+import rocks.euu.mcp.model.Project;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Projects and their work packages as MCP resources, read from the project tree and
+ * the work package cache instead of OpenProject.
+ * 
+ * Changes are announced with notifications/resources/updated. The MCP SDK does not
+ * handle resources/subscribe yet, so the notifications go to all sessions and clients
+ * re-read only the URIs they hold.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OpenProjectResources {
+    
+    public static final String PROJECTS_URI = "openproject://projects";
+    public static final String PROJECT_URI_TEMPLATE = "openproject://projects/{project}";
+    public static final String WORK_PACKAGES_URI_TEMPLATE = "openproject://projects/{project}/work_packages";
+    public static final String MIME_TYPE = "application/json";
+    
+    private static final String PROJECT_PREFIX = PROJECTS_URI + "/";
+    private static final String WORK_PACKAGES_SUFFIX = "/work_packages";
+    
+    private final ProjectTree projectTree;
+    private final WorkPackageCache workPackageCache;
+    private final ObjectProvider<McpSyncServer> mcpServer;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    
+    /**
+     * Read one of the resources: all projects, one project by ID or identifier,
+     * or all work packages of a project
+     */
+    public McpSchema.ReadResourceResult read(String uri) {
+        Object content;
+        if (PROJECTS_URI.equals(uri)) {
+            content = projectTree.projects();
+        } else if (uri != null && uri.startsWith(PROJECT_PREFIX) && uri.endsWith(WORK_PACKAGES_SUFFIX)) {
+            Project project = project(uri, uri.substring(PROJECT_PREFIX.length(), uri.length() - WORK_PACKAGES_SUFFIX.length()));
+            content = workPackageCache.workPackages(project.getId());
+        } else if (uri != null && uri.startsWith(PROJECT_PREFIX)) {
+            content = project(uri, uri.substring(PROJECT_PREFIX.length()));
+        } else {
+            throw McpError.RESOURCE_NOT_FOUND.apply(uri);
+        }
+        
+        try {
+            return new McpSchema.ReadResourceResult(List.of(
+                    new McpSchema.TextResourceContents(uri, MIME_TYPE, objectMapper.writeValueAsString(content))));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize " + uri, e);
+        }
+    }
+    
+    /**
+     * Announce a created or changed project
+     */
+    public void projectChanged(Project project) {
+        Set<String> uris = new LinkedHashSet<>();
+        uris.add(PROJECTS_URI);
+        for (String key : projectKeys(project.getId(), project.getIdentifier())) {
+            uris.add(PROJECT_PREFIX + key);
+        }
+        uris.forEach(this::notifyUpdated);
+    }
+    
+    /**
+     * Announce changed work packages in a project
+     */
+    public void workPackagesChanged(Integer projectId) {
+        String identifier = projectTree.findLoaded(projectId).map(Project::getIdentifier).orElse(null);
+        for (String key : projectKeys(projectId, identifier)) {
+            notifyUpdated(PROJECT_PREFIX + key + WORK_PACKAGES_SUFFIX);
+        }
+    }
+    
+    /**
+     * Drop the cached work packages of a project this server wrote to and announce the
+     * change; without webhooks nothing else would. Failures are only logged, the write
+     * itself succeeded.
+     */
+    public void workPackagesWritten(String projectIdOrIdentifier) {
+        try {
+            Integer projectId = projectId(projectIdOrIdentifier);
+            if (projectId == null) {
+                log.debug("Unknown project '{}', no cached work packages to drop", projectIdOrIdentifier);
+                return;
+            }
+            workPackageCache.invalidate(projectId);
+            workPackagesChanged(projectId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to drop cached work packages of project {}: {}", projectIdOrIdentifier, e.getMessage());
+        }
+    }
+    
+    /**
+     * Remove a deleted work package from the cached projects and announce them
+     */
+    public void workPackageDeleted(Integer workPackageId) {
+        workPackageCache.removeEverywhere(workPackageId).forEach(this::workPackagesChanged);
+    }
+    
+    private Integer projectId(String idOrIdentifier) {
+        String key = idOrIdentifier != null ? idOrIdentifier.trim() : "";
+        if (!key.isEmpty() && key.chars().allMatch(Character::isDigit)) {
+            return Integer.valueOf(key);
+        }
+        return key.isEmpty() ? null : projectTree.find(key).map(Project::getId).orElse(null);
+    }
+    
+    private Project project(String uri, String idOrIdentifier) {
+        return projectTree.find(idOrIdentifier).orElseThrow(() -> McpError.RESOURCE_NOT_FOUND.apply(uri));
+    }
+    
+    /**
+     * A project can be addressed by ID and by identifier, so both URIs are announced
+     */
+    private static Set<String> projectKeys(Integer projectId, String identifier) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (projectId != null) {
+            keys.add(projectId.toString());
+        }
+        if (identifier != null) {
+            keys.add(identifier);
+        }
+        return keys;
+    }
+    
+    private void notifyUpdated(String uri) {
+        McpSyncServer server = mcpServer.getIfAvailable();
+        if (server == null) {
+            return;
+        }
+        log.debug("Resource updated: {}", uri);
+        // Not blocking, this may run on the event loop of the webhook request
+        server.getAsyncServer()
+                .notifyResourcesUpdated(new McpSchema.ResourcesUpdatedNotification(uri))
+                .subscribe(null, e -> log.warn("Failed to announce update of {}: {}", uri, e.getMessage()));
+    }
+}
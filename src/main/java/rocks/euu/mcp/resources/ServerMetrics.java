@@ -0,0 +1,55 @@
+package rocks.euu.mcp.resources;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.modelcontextprotocol.spec.McpSchema;
+import rocks.euu.mcp.client.UpstreamAdmission;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load of the server as an MCP resource: the OpenProject requests in flight and waiting for
+ * admission, and the openproject.upstream.queue.wait timer per request class. Without
+ * Spring Boot Actuator this is the only place the meter registry can be read.
+ */
+@Component
+@RequiredArgsConstructor
+public class ServerMetrics {
+    
+    public static final String METRICS_URI = "openproject://metrics";
+    
+    private final UpstreamAdmission upstreamAdmission;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    public McpSchema.ReadResourceResult read() {
+        Map<String, Object> queueWait = new TreeMap<>();
+        for (Timer timer : meterRegistry.find(UpstreamAdmission.QUEUE_WAIT_METRIC).timers()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", timer.count());
+            stats.put("totalMs", timer.totalTime(TimeUnit.MILLISECONDS));
+            stats.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+            stats.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+            queueWait.put(timer.getId().getTag("class"), stats);
+        }
+        
+        Map<String, Object> upstream = new LinkedHashMap<>();
+        upstream.put("inFlight", upstreamAdmission.inFlight());
+        upstream.put("queued", upstreamAdmission.queued());
+        upstream.put("queueWait", queueWait);
+        try {
+            return new McpSchema.ReadResourceResult(List.of(new McpSchema.TextResourceContents(METRICS_URI,
+                    OpenProjectResources.MIME_TYPE, objectMapper.writeValueAsString(Map.of("upstream", upstream)))));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize " + METRICS_URI, e);
+        }
+    }
+}
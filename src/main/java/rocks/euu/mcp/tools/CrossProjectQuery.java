@@ -0,0 +1,103 @@
+package rocks.euu.mcp.tools;
+
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.client.WorkPackageQuery;
+import rocks.euu.mcp.model.Project;
+import rocks.euu.mcp.model.WorkPackage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Runs one work package query against many projects and merges the results.
+ * 
+ * The first page of every project is fetched with bounded concurrency. OpenProject
+ * already sorts each project's work packages, so the per-project streams are k-way
+ * merged into one globally ordered list. Once the limit is reached the merge is
+ * cancelled and no further pages are requested.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class CrossProjectQuery {
+    
+    /**
+     * Largest page size requested per project; a page never needs to hold more than the limit
+     */
+    private static final int MAX_PAGE_SIZE = 100;
+    
+    private static final Map<String, Function<WorkPackage, Comparable<?>>> SORT_KEYS = Map.of(
+            "id", WorkPackage::getId,
+            "subject", wp -> wp.getSubject() != null ? wp.getSubject().toLowerCase(Locale.ROOT) : null,
+            "startDate", WorkPackage::getStartDate,
+            "dueDate", WorkPackage::getDueDate);
+    
+    private final OpenProjectClient client;
+    private final int concurrency;
+    
+    /**
+     * Query all projects and return at most {@code limit} work packages, sorted by the field
+     */
+    Result run(List<Project> projects, WorkPackageQuery query, String sortField, boolean descending, int limit) {
+        query.getSortBy().clear();
+        query.sortBy(sortField, descending ? "desc" : "asc");
+        query.sortBy("id", "asc");
+        query.setPageSize(Math.min(limit, MAX_PAGE_SIZE));
+        
+        List<String> failedProjects = new CopyOnWriteArrayList<>();
+        List<Flux<WorkPackage>> streams = Flux.fromIterable(projects)
+                .flatMapSequential(project -> client.openWorkPackageStream(String.valueOf(project.getId()), query)
+                        .map(stream -> stream.onErrorResume(e -> {
+                            skip(project, e, failedProjects);
+                            return Flux.empty();
+                        }))
+                        .onErrorResume(e -> {
+                            skip(project, e, failedProjects);
+                            return Mono.empty();
+                        }),
+                        concurrency)
+                .collectList()
+                .block();
+        
+        @SuppressWarnings("unchecked")
+        Flux<WorkPackage>[] sources = streams.toArray(new Flux[0]);
+        List<WorkPackage> merged = Flux.mergeComparing(1, order(sortField, descending), sources)
+                .take(limit)
+                .collectList()
+                .block();
+        
+        return new Result(projects.size(), List.copyOf(failedProjects), merged);
+    }
+    
+    static boolean isSortable(String field) {
+        return SORT_KEYS.containsKey(field);
+    }
+    
+    /**
+     * The order OpenProject returns for [[field, direction], ["id", "asc"]]: nulls last when ascending
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static Comparator<WorkPackage> order(String field, boolean descending) {
+        Function<WorkPackage, Comparable> key = (Function) SORT_KEYS.get(field);
+        Comparator<WorkPackage> order = Comparator.comparing(key, Comparator.nullsLast(Comparator.naturalOrder()));
+        if (descending) {
+            order = order.reversed();
+        }
+        return order.thenComparing(WorkPackage::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+    }
+    
+    private static void skip(Project project, Throwable e, List<String> failedProjects) {
+        log.warn("Skipping project {} in cross-project query: {}", project.getIdentifier(), e.getMessage());
+        failedProjects.add(project.getIdentifier() != null ? project.getIdentifier() : String.valueOf(project.getId()));
+    }
+    
+    record Result(int projectsQueried, List<String> failedProjects, List<WorkPackage> workPackages) {
+    }
+}
@@ -0,0 +1,107 @@
+package rocks.euu.mcp.tools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Transitive reduction of plan dependencies: drops every edge that is already implied by
+ * a longer path, and duplicates, so only the relations that carry information are created.
+ * If C depends on A and B and B depends on A, C keeps only B.
+ * 
+ * The ancestors of each task are kept as a bitset and built in topological order, one
+ * OR per edge. With n tasks that is n²/8 bytes, about 12 MB for 10,000 tasks.
+ */
+final class DependencyReduction {
+    
+    private DependencyReduction() {
+    }
+    
+    /**
+     * Reduced predecessor indexes per task, in their original order. Indexes outside the
+     * plan and self-references are passed through unchanged, and tasks on a dependency
+     * cycle only lose duplicates, since a cycle has no unique reduction.
+     */
+    static int[][] reduce(int[][] dependsOn) {
+        int n = dependsOn.length;
+        int[][] distinct = new int[n][];
+        int[] waitingFor = new int[n];
+        List<List<Integer>> successors = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            successors.add(new ArrayList<>());
+        }
+        for (int i = 0; i < n; i++) {
+            distinct[i] = dependsOn[i] != null ? distinct(dependsOn[i]) : new int[0];
+            for (int predecessor : distinct[i]) {
+                if (isTask(predecessor, n) && predecessor != i) {
+                    successors.get(predecessor).add(i);
+                    waitingFor[i]++;
+                }
+            }
+        }
+        
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            if (waitingFor[i] == 0) {
+                ready.add(i);
+            }
+        }
+        BitSet[] ancestors = new BitSet[n];
+        int[][] reduced = distinct.clone();
+        while (!ready.isEmpty()) {
+            int i = ready.poll();
+            // Every predecessor is final here, so a predecessor reachable through another one is redundant
+            BitSet implied = new BitSet(n);
+            for (int predecessor : distinct[i]) {
+                if (isTask(predecessor, n) && predecessor != i) {
+                    implied.or(ancestors[predecessor]);
+                }
+            }
+            BitSet own = (BitSet) implied.clone();
+            List<Integer> kept = new ArrayList<>();
+            for (int predecessor : distinct[i]) {
+                if (!isTask(predecessor, n) || predecessor == i) {
+                    kept.add(predecessor);
+                } else if (!implied.get(predecessor)) {
+                    kept.add(predecessor);
+                    own.set(predecessor);
+                }
+            }
+            ancestors[i] = own;
+            reduced[i] = kept.stream().mapToInt(Integer::intValue).toArray();
+            
+            for (int successor : successors.get(i)) {
+                if (--waitingFor[successor] == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+        return reduced;
+    }
+    
+    /**
+     * Number of dependencies on tasks of the plan, i.e. the relations that would be created
+     */
+    static int count(int[][] dependsOn) {
+        int count = 0;
+        for (int[] predecessors : dependsOn) {
+            for (int predecessor : predecessors != null ? predecessors : new int[0]) {
+                if (isTask(predecessor, dependsOn.length)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    private static int[] distinct(int[] indexes) {
+        return Arrays.stream(indexes).distinct().toArray();
+    }
+    
+    private static boolean isTask(int index, int n) {
+        return index >= 0 && index < n;
+    }
+}
@@ -2,17 +2,45 @@ package rocks.euu.mcp.tools;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import rocks.euu.mcp.cache.IdempotencyStore;
+import rocks.euu.mcp.cache.PageSnapshots;
+import rocks.euu.mcp.cache.ProjectTree;
+import rocks.euu.mcp.cache.ReferenceDataCache;
+import rocks.euu.mcp.client.LastKnown;
 import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.client.WorkPackageQuery;
+import rocks.euu.mcp.config.OpenProjectProperties;
 import rocks.euu.mcp.model.Project;
 import rocks.euu.mcp.model.Relation;
+import rocks.euu.mcp.model.Type;
 import rocks.euu.mcp.model.WorkPackage;
+import rocks.euu.mcp.resources.OpenProjectResources;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
@@ -20,14 +48,35 @@ import java.util.List;
 public class OpenProjectTools {
     
     private final OpenProjectClient client;
+    private final ReferenceDataCache referenceData;
+    private final IdempotencyStore idempotencyStore;
+    private final ProjectTree projectTree;
+    private final PageSnapshots pageSnapshots;
+    private final OpenProjectResources resources;
+    private final OpenProjectProperties properties;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
+    private static final Set<String> STATUS_STATES = Set.of("open", "closed", "all");
+    
+    private static final String PAGING_DESCRIPTION =
+          "Large results, or any result when a limit is given, are returned in pages: an object with the items, " +
+          "count, total and a nextCursor to pass as cursor for the next page, which is served from a snapshot " +
+          "for a few minutes. ";
+    
     @Tool(description = "List all accessible projects in OpenProject. " +
-          "Returns project names, identifiers, and IDs.")
-    public String listProjects() {
+          "Returns project names, identifiers, and IDs. " + PAGING_DESCRIPTION +
+          "If OpenProject is unavailable, the last known list is returned with \"stale\": true.")
+    public String listProjects(
+            @ToolParam(description = "Optional maximum number of projects per page") 
+            Integer limit,
+            @ToolParam(description = "Optional nextCursor of the previous page") 
+            String cursor) {
+        if (trimToNull(cursor) != null) {
+            return nextPage(cursor.trim(), limit);
+        }
         log.info("Listing all projects");
-        List<Project> projects = client.listProjects();
-        return toJson(projects);
+        LastKnown<List<Project>> projects = client.listProjectsOrLastKnown();
+        return paged("projects", projects, projects.value(), limit);
     }
     
     @Tool(description = "Create a new project in OpenProject. " +
@@ -40,21 +89,232 @@ public class OpenProjectTools {
             @ToolParam(description = "Optional description of the project") 
             String description,
             @ToolParam(description = "Optional parent project identifier or numeric ID for sub-projects") 
-            String parentId) {
+            String parentId,
+            @ToolParam(description = "Optional idempotency key. Repeating a call with the same key returns the original result instead of creating a duplicate.") 
+            String idempotencyKey) {
         
         log.info("Creating project '{}' ({})", name, identifier);
-        Project project = client.createProject(name, identifier, description, parentId);
-        return toJson(project);
+        return idempotent("createProject", idempotencyKey, () -> {
+            Project project = client.createProject(name, identifier, description, parentId);
+            projectTree.put(project);
+            return toJson(project);
+        });
     }
     
-    @Tool(description = "List all work packages (tasks) in an OpenProject project. " +
-          "Returns IDs, subjects, dates, and status for Gantt chart planning.")
+    @Tool(description = "Show the project hierarchy: a project with all its sub-projects, " +
+          "or all top-level projects with their sub-projects. Served from a local cache that is " +
+          "rebuilt every few minutes; pass refresh=true to rebuild it first.")
+    public String getProjectTree(
+            @ToolParam(description = "Optional project identifier (slug) or numeric ID; the whole hierarchy if empty") 
+            String projectId,
+            @ToolParam(description = "Rebuild the hierarchy from OpenProject before answering (default: false)") 
+            Boolean refresh) {
+        log.info("Getting project tree for: {}", projectId);
+        if (Boolean.TRUE.equals(refresh)) {
+            projectTree.refresh();
+        }
+        if (trimToNull(projectId) == null) {
+            return toJson(projectTree.forest());
+        }
+        return toJson(projectTree.subtree(projectId.trim()));
+    }
+    
+    @Tool(description = "List work packages (tasks) in an OpenProject project. " +
+          "Returns IDs, subjects, dates, and status for Gantt chart planning. " +
+          "All filters are optional and applied by OpenProject, so only matching tasks are returned. " +
+          PAGING_DESCRIPTION +
+          "If OpenProject is unavailable, the last known result is returned with \"stale\": true.")
     public String listWorkPackages(
             @ToolParam(description = "Project identifier (slug) or numeric ID") 
-            String projectId) {
+            String projectId,
+            @ToolParam(description = "Optional status filter: 'open' (default), 'closed', 'all', or comma-separated status names, e.g. 'New,In progress'") 
+            String status,
+            @ToolParam(description = "Optional comma-separated type names, e.g. 'Task,Milestone'") 
+            String type,
+            @ToolParam(description = "Optional comma-separated assignee names or user IDs; 'me' for the API user") 
+            String assignee,
+            @ToolParam(description = "Optional earliest start date (YYYY-MM-DD), inclusive") 
+            String startDateFrom,
+            @ToolParam(description = "Optional latest start date (YYYY-MM-DD), inclusive") 
+            String startDateTo,
+            @ToolParam(description = "Optional earliest due date (YYYY-MM-DD), inclusive") 
+            String dueDateFrom,
+            @ToolParam(description = "Optional latest due date (YYYY-MM-DD), inclusive") 
+            String dueDateTo,
+            @ToolParam(description = "Optional text the subject must contain") 
+            String subjectContains,
+            @ToolParam(description = "Optional sort order as comma-separated field:direction pairs, e.g. 'dueDate:asc,id:desc'") 
+            String sortBy,
+            @ToolParam(description = "Optional maximum number of work packages per page") 
+            Integer limit,
+            @ToolParam(description = "Optional nextCursor of the previous page; the other parameters are then ignored") 
+            String cursor) {
+        if (trimToNull(cursor) != null) {
+            return nextPage(cursor.trim(), limit);
+        }
         log.info("Listing work packages for project: {}", projectId);
-        List<WorkPackage> workPackages = client.listWorkPackages(projectId);
-        return toJson(workPackages);
+        WorkPackageQuery query = toQuery(status, type, assignee,
+                startDateFrom, startDateTo, dueDateFrom, dueDateTo, subjectContains, sortBy);
+        LastKnown<List<WorkPackage>> workPackages = client.listWorkPackagesOrLastKnown(projectId, query);
+        return paged("workPackages", workPackages, withReferenceNames(workPackages.value()), limit);
+    }
+    
+    @Tool(description = "Get the details of work packages by ID, e.g. the ids returned by createProjectPlan, " +
+          "in one call. Work packages are returned in the order of the IDs; IDs that do not exist or are " +
+          "not visible to the API user are listed as missing.")
+    public String getWorkPackages(
+            @ToolParam(description = "Comma-separated work package IDs, e.g. '101,102,105'") 
+            String ids) {
+        Set<Integer> requested = new LinkedHashSet<>();
+        for (String id : splitList(ids)) {
+            try {
+                requested.add(Integer.parseInt(id));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid work package ID '" + id + "'");
+            }
+        }
+        log.info("Getting {} work packages by ID", requested.size());
+        
+        Map<Integer, WorkPackage> found = new HashMap<>();
+        if (!requested.isEmpty()) {
+            client.getWorkPackages(requested, properties.getFanOutConcurrency())
+                    .doOnNext(wp -> found.put(wp.getId(), wp))
+                    .blockLast();
+        }
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        List<WorkPackage> workPackages = requested.stream().filter(found::containsKey).map(found::get).toList();
+        response.put("count", workPackages.size());
+        response.put("missing", requested.stream().filter(id -> !found.containsKey(id)).toList());
+        response.put("workPackages", withReferenceNames(workPackages));
+        return toJson(response);
+    }
+    
+    @Tool(description = "Export all work packages of a project to a local file as NDJSON or CSV, " +
+          "for reports on large projects. Returns only the file path and row count, not the data.")
+    public String exportWorkPackages(
+            @ToolParam(description = "Project identifier (slug) or numeric ID") 
+            String projectId,
+            @ToolParam(description = "Optional file format: 'csv' (default) or 'ndjson'") 
+            String format,
+            @ToolParam(description = "Optional status filter: 'all' (default), 'open', 'closed', or comma-separated status names") 
+            String status) {
+        log.info("Exporting work packages of project {}", projectId);
+        WorkPackageExport.Format exportFormat;
+        try {
+            exportFormat = trimToNull(format) == null ? WorkPackageExport.Format.CSV
+                    : WorkPackageExport.Format.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown export format '" + format + "', use 'csv' or 'ndjson'");
+        }
+        WorkPackageQuery query = toQuery(trimToNull(status) != null ? status : "all",
+                null, null, null, null, null, null, null, null);
+        query.sortBy("id", "asc");
+        
+        WorkPackageExport.Result result = new WorkPackageExport(client, Path.of(properties.getExportDirectory()))
+                .run(projectId, query, exportFormat);
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("path", result.path().toString());
+        response.put("format", result.format().extension);
+        response.put("rows", result.rows());
+        response.put("pages", result.pages());
+        response.put("bytes", result.bytes());
+        return toJson(response);
+    }
+    
+    @Tool(description = "Query work packages across all projects, or across the projects whose name or " +
+          "identifier contains a text, e.g. everything due this month in the whole portfolio. " +
+          "Projects are queried in parallel and the results are merged into one sorted list.")
+    public String queryAcrossProjects(
+            @ToolParam(description = "Optional text the project name or identifier must contain; all projects if empty") 
+            String projectFilter,
+            @ToolParam(description = "Optional status filter: 'open' (default), 'closed', 'all', or comma-separated status names") 
+            String status,
+            @ToolParam(description = "Optional comma-separated type names") 
+            String type,
+            @ToolParam(description = "Optional comma-separated assignee names or user IDs; 'me' for the API user") 
+            String assignee,
+            @ToolParam(description = "Optional earliest due date (YYYY-MM-DD), inclusive") 
+            String dueDateFrom,
+            @ToolParam(description = "Optional latest due date (YYYY-MM-DD), inclusive") 
+            String dueDateTo,
+            @ToolParam(description = "Optional text the subject must contain") 
+            String subjectContains,
+            @ToolParam(description = "Sort order as field:direction; field is one of id, subject, startDate, dueDate. Default 'dueDate:asc'") 
+            String sortBy,
+            @ToolParam(description = "Maximum number of work packages to return, default 50") 
+            Integer limit) {
+        
+        String[] sort = (trimToNull(sortBy) != null ? sortBy.trim() : "dueDate:asc").split(":", 2);
+        String sortField = sort[0].trim();
+        boolean descending = sort.length > 1 && sort[1].trim().equalsIgnoreCase("desc");
+        if (!CrossProjectQuery.isSortable(sortField)) {
+            throw new IllegalArgumentException("Cannot sort by '" + sortField + "', use id, subject, startDate or dueDate");
+        }
+        int maxResults = limit != null && limit > 0 ? limit : 50;
+        log.info("Querying work packages across projects matching '{}'", projectFilter);
+        
+        String projectText = trimToNull(projectFilter) != null ? projectFilter.trim().toLowerCase(Locale.ROOT) : null;
+        List<Project> projects = projectTree.projects().stream()
+                .filter(p -> projectText == null
+                        || (p.getName() != null && p.getName().toLowerCase(Locale.ROOT).contains(projectText))
+                        || (p.getIdentifier() != null && p.getIdentifier().toLowerCase(Locale.ROOT).contains(projectText)))
+                .toList();
+        
+        WorkPackageQuery query = toQuery(status, type, assignee, null, null, dueDateFrom, dueDateTo, subjectContains, null);
+        CrossProjectQuery.Result result = new CrossProjectQuery(client, properties.getFanOutConcurrency())
+                .run(projects, query, sortField, descending, maxResults);
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("projectsQueried", result.projectsQueried());
+        response.put("failedProjects", result.failedProjects());
+        response.put("count", result.workPackages().size());
+        response.put("workPackages", withReferenceNames(result.workPackages()));
+        return toJson(response);
+    }
+    
+    @Tool(description = "Compute statistics over all work packages of a project without listing them: " +
+          "counts by status, type and assignee, overdue counts (due before today and not closed), " +
+          "and optionally a histogram of due dates per week or month.")
+    public String projectStatistics(
+            @ToolParam(description = "Project identifier (slug) or numeric ID") 
+            String projectId,
+            @ToolParam(description = "Optional due date histogram bucket: 'week' or 'month'") 
+            String histogram) {
+        log.info("Computing statistics for project: {}", projectId);
+        String bucket = trimToNull(histogram) != null ? histogram.trim().toLowerCase(Locale.ROOT) : null;
+        if (bucket != null && !bucket.equals("week") && !bucket.equals("month")) {
+            throw new IllegalArgumentException("Invalid histogram bucket '" + histogram + "', use week or month");
+        }
+        
+        WorkPackageQuery allWorkPackages = new WorkPackageQuery();
+        allWorkPackages.setStatusState("all");
+        LocalDate today = LocalDate.now();
+        
+        // Counts alone can come from OpenProject's groupBy; the histogram needs the dates
+        if (bucket == null) {
+            Optional<Map<String, Object>> grouped = groupedStatistics(projectId, allWorkPackages, today);
+            if (grouped.isPresent()) {
+                return toJson(grouped.get());
+            }
+        }
+        
+        WorkPackageStatistics statistics = new WorkPackageStatistics(today, bucket, this::linkName, this::isClosed);
+        client.streamWorkPackages(projectId, allWorkPackages)
+                .doOnNext(statistics::accept)
+                .blockLast();
+        return toJson(statistics.toMap());
+    }
+    
+    @Tool(description = "List the work package types, statuses and priorities known to OpenProject. " +
+          "Use these names for the 'type' parameter of createWorkPackage and createProjectPlan.")
+    public String getReferenceData() {
+        log.info("Listing reference data");
+        return toJson(Map.of(
+                "types", referenceData.types(),
+                "statuses", referenceData.statuses(),
+                "priorities", referenceData.priorities()));
     }
     
     @Tool(description = "Create a new work package (task) in an OpenProject project. " +
@@ -69,11 +329,18 @@ public class OpenProjectTools {
             @ToolParam(description = "Due date in YYYY-MM-DD format, e.g. 2025-02-20") 
             String dueDate,
             @ToolParam(description = "Optional description of the task") 
-            String description) {
+            String description,
+            @ToolParam(description = "Optional type name, e.g. 'Task' or 'Milestone'. Defaults to the default type.") 
+            String type,
+            @ToolParam(description = "Optional idempotency key. Repeating a call with the same key returns the original result instead of creating a duplicate.") 
+            String idempotencyKey) {
         
         log.info("Creating work package '{}' in project {}", subject, projectId);
-        WorkPackage wp = client.createWorkPackage(projectId, subject, startDate, dueDate, description, null);
-        return toJson(wp);
+        return idempotent("createWorkPackage", idempotencyKey, () -> {
+            WorkPackage wp = client.createWorkPackage(projectId, subject, startDate, dueDate, description, resolveTypeId(type));
+            resources.workPackagesWritten(projectId);
+            return toJson(wp);
+        });
     }
     
     @Tool(description = "Create a dependency (relation) between two work packages for Gantt scheduling. " +
@@ -83,31 +350,86 @@ public class OpenProjectTools {
             @ToolParam(description = "ID of the successor work package (the one that waits)") 
             int successorId,
             @ToolParam(description = "ID of the predecessor work package (the one that must complete first)") 
-            int predecessorId) {
+            int predecessorId,
+            @ToolParam(description = "Optional idempotency key. Repeating a call with the same key returns the original result instead of creating a duplicate.") 
+            String idempotencyKey) {
         
         log.info("Creating dependency: {} follows {}", successorId, predecessorId);
-        Relation relation = client.createRelation(successorId, predecessorId, "follows");
-        return toJson(relation);
+        return idempotent("createDependency", idempotencyKey, () -> {
+            Relation relation = client.createRelation(successorId, predecessorId, "follows");
+            return toJson(relation);
+        });
     }
     
     @Tool(description = "Create a complete project plan with multiple tasks and dependencies in one call. " +
           "Provide a JSON array of tasks with their dependencies. Each task needs: " +
-          "subject, startDate, dueDate, and optionally dependsOn (array of task indices).")
+          "subject, either startDate and dueDate or a duration in working days, and optionally type (type name) " +
+          "and dependsOn (array of task indices). Dates of tasks with a duration are computed from their " +
+          "dependencies, skipping weekends and the given non-working days. Dependencies already implied " +
+          "by others (e.g. C on A when C depends on B and B on A) and duplicates are dropped unless disabled. " +
+          "Sends progress notifications while creating; if creation fails midway, " +
+          "the IDs created so far are returned.")
     public String createProjectPlan(
             @ToolParam(description = "Project identifier (slug) or numeric ID") 
             String projectId,
             @ToolParam(description = "JSON array of tasks, e.g.: " +
                 "[{\"subject\":\"Design\",\"startDate\":\"2025-02-01\",\"dueDate\":\"2025-02-05\"}," +
                 "{\"subject\":\"Development\",\"startDate\":\"2025-02-06\",\"dueDate\":\"2025-02-15\",\"dependsOn\":[0]}," +
-                "{\"subject\":\"Testing\",\"startDate\":\"2025-02-16\",\"dueDate\":\"2025-02-20\",\"dependsOn\":[1]}]") 
-            String tasksJson) {
+                "{\"subject\":\"Testing\",\"startDate\":\"2025-02-16\",\"dueDate\":\"2025-02-20\",\"dependsOn\":[1]}] " +
+                "or with durations: [{\"subject\":\"Design\",\"duration\":5},{\"subject\":\"Development\",\"duration\":10,\"dependsOn\":[0]}]") 
+            String tasksJson,
+            @ToolParam(description = "Optional earliest start date (YYYY-MM-DD) for tasks with a duration (default: today)") 
+            String planStart,
+            @ToolParam(description = "Optional comma-separated non-working days besides weekends (YYYY-MM-DD), e.g. public holidays") 
+            String nonWorkingDays,
+            @ToolParam(description = "Drop dependencies implied by other dependencies before creating relations (default: true)") 
+            Boolean reduceDependencies,
+            ToolContext toolContext) {
         
         log.info("Creating project plan in project {}", projectId);
         
+        TaskDefinition[] tasks;
+        try {
+            tasks = objectMapper.readValue(tasksJson, TaskDefinition[].class);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to parse tasks JSON", e);
+            return "{\"success\":false,\"error\":" + toJsonString("Invalid JSON format: " + e.getMessage()) + "}";
+        }
+        
+        Integer[] typeIds = new Integer[tasks.length];
+        try {
+            for (int i = 0; i < tasks.length; i++) {
+                typeIds[i] = resolveTypeId(tasks[i].type);
+            }
+            schedule(tasks, planStart, nonWorkingDays);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return "{\"success\":false,\"error\":" + toJsonString(e.getMessage()) + "}";
+        }
+        
+        int relationsSaved = 0;
+        if (!Boolean.FALSE.equals(reduceDependencies)) {
+            int[][] dependsOn = Arrays.stream(tasks).map(task -> task.dependsOn).toArray(int[][]::new);
+            int[][] reduced = DependencyReduction.reduce(dependsOn);
+            relationsSaved = DependencyReduction.count(dependsOn) - DependencyReduction.count(reduced);
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i].dependsOn = reduced[i];
+            }
+            if (relationsSaved > 0) {
+                log.info("Dropped {} implied or duplicate dependencies from the plan", relationsSaved);
+            }
+        }
+        
+        ProgressReporter progress = ProgressReporter.from(toolContext);
+        int totalSteps = tasks.length;
+        for (TaskDefinition task : tasks) {
+            totalSteps += task.dependsOn != null ? task.dependsOn.length : 0;
+        }
+        
+        int[] createdIds = new int[tasks.length];
+        int workPackagesCreated = 0;
+        int relationsCreated = 0;
+        
         try {
-            TaskDefinition[] tasks = objectMapper.readValue(tasksJson, TaskDefinition[].class);
-            int[] createdIds = new int[tasks.length];
-            
             // First pass: create all work packages
             for (int i = 0; i < tasks.length; i++) {
                 TaskDefinition task = tasks[i];
@@ -117,35 +439,225 @@ public class OpenProjectTools {
                         task.startDate, 
                         task.dueDate, 
                         task.description, 
-                        null);
+                        typeIds[i]);
                 createdIds[i] = wp.getId();
+                workPackagesCreated++;
                 log.info("Created work package '{}' with ID {}", task.subject, wp.getId());
+                progress.report(workPackagesCreated, totalSteps, "Created work package '" + task.subject + "'");
             }
             
             // Second pass: create dependencies
-            int relationsCreated = 0;
+            int step = workPackagesCreated;
             for (int i = 0; i < tasks.length; i++) {
                 if (tasks[i].dependsOn != null) {
                     for (int depIndex : tasks[i].dependsOn) {
+                        step++;
                         if (depIndex >= 0 && depIndex < createdIds.length) {
                             client.createRelation(createdIds[i], createdIds[depIndex], "follows");
                             relationsCreated++;
                             log.info("Created dependency: {} follows {}", createdIds[i], createdIds[depIndex]);
                         }
+                        progress.report(step, totalSteps, "Created dependencies for '" + tasks[i].subject + "'");
                     }
                 }
             }
             
+        } catch (RuntimeException e) {
+            // Return what was created so far so the caller can resume instead of starting over
+            log.error("Project plan in project {} interrupted after {} work packages and {} relations",
+                    projectId, workPackagesCreated, relationsCreated, e);
+            if (workPackagesCreated > 0) {
+                resources.workPackagesWritten(projectId);
+            }
             return String.format(
-                    "{\"success\":true,\"workPackagesCreated\":%d,\"relationsCreated\":%d,\"ids\":%s}",
-                    tasks.length, 
-                    relationsCreated, 
-                    toJson(createdIds));
-            
+                    "{\"success\":false,\"error\":%s,\"workPackagesCreated\":%d,\"relationsCreated\":%d,\"ids\":%s}",
+                    toJsonString(e.getMessage()),
+                    workPackagesCreated,
+                    relationsCreated,
+                    toJsonString(Arrays.copyOf(createdIds, workPackagesCreated)));
+        }
+        resources.workPackagesWritten(projectId);
+        
+        return String.format(
+                "{\"success\":true,\"workPackagesCreated\":%d,\"relationsCreated\":%d,\"relationsSaved\":%d,\"ids\":%s,\"dates\":%s}",
+                tasks.length, 
+                relationsCreated, 
+                relationsSaved, 
+                toJson(createdIds),
+                toJsonString(Arrays.stream(tasks).map(task -> new String[] {task.startDate, task.dueDate}).toList()));
+    }
+    
+    /**
+     * Fill in the dates of tasks with a duration, from their dependencies and the calendar
+     */
+    private static void schedule(TaskDefinition[] tasks, String planStart, String nonWorkingDays) {
+        if (Arrays.stream(tasks).noneMatch(task -> task.duration != null)) {
+            return;
+        }
+        Set<LocalDate> daysOff = new HashSet<>();
+        if (trimToNull(nonWorkingDays) != null) {
+            for (String day : nonWorkingDays.split(",")) {
+                daysOff.add(LocalDate.parse(day.trim()));
+            }
+        }
+        List<PlanScheduler.Task> input = Arrays.stream(tasks)
+                .map(task -> new PlanScheduler.Task(
+                        task.startDate != null ? LocalDate.parse(task.startDate) : null,
+                        task.dueDate != null ? LocalDate.parse(task.dueDate) : null,
+                        task.duration,
+                        task.dependsOn))
+                .toList();
+        LocalDate start = trimToNull(planStart) != null ? LocalDate.parse(planStart.trim()) : LocalDate.now();
+        
+        List<PlanScheduler.Dates> dates = new PlanScheduler(daysOff).schedule(input, start);
+        for (int i = 0; i < tasks.length; i++) {
+            PlanScheduler.Dates scheduled = dates.get(i);
+            tasks[i].startDate = scheduled.startDate() != null ? scheduled.startDate().toString() : null;
+            tasks[i].dueDate = scheduled.dueDate() != null ? scheduled.dueDate().toString() : null;
+        }
+    }
+    
+    @Tool(description = "Bring a project in line with a plan of tasks with stable keys. Compares the plan with " +
+          "the work packages created by earlier applies and only creates, updates, links, unlinks or deletes " +
+          "what differs, so the plan can be edited and applied again. Use dryRun to see the changes first.")
+    public String applyProjectPlan(
+            @ToolParam(description = "Project identifier (slug) or numeric ID") 
+            String projectId,
+            @ToolParam(description = "JSON array of tasks with unique keys (letters, digits, '_', '.', '-'), e.g.: " +
+                "[{\"key\":\"design\",\"subject\":\"Design\",\"startDate\":\"2025-02-01\",\"dueDate\":\"2025-02-05\"}," +
+                "{\"key\":\"dev\",\"subject\":\"Development\",\"startDate\":\"2025-02-06\",\"dueDate\":\"2025-02-15\"," +
+                "\"dependsOn\":[\"design\"]}]. Omitted fields are left unchanged on existing work packages.") 
+            String tasksJson,
+            @ToolParam(description = "Optional: delete work packages of earlier applies whose key is no longer in the plan (default: false)") 
+            Boolean deleteMissing,
+            @ToolParam(description = "Optional: only return the changes without applying them (default: false)") 
+            Boolean dryRun,
+            ToolContext toolContext) {
+        
+        log.info("Applying project plan to project {}{}", projectId, Boolean.TRUE.equals(dryRun) ? " (dry run)" : "");
+        
+        List<PlanApply.Task> tasks;
+        try {
+            tasks = List.of(objectMapper.readValue(tasksJson, PlanApply.Task[].class));
         } catch (JsonProcessingException e) {
-            log.error("Failed to parse tasks JSON", e);
-            return "{\"success\":false,\"error\":\"Invalid JSON format: " + e.getMessage() + "\"}";
+            return "{\"success\":false,\"error\":" + toJsonString("Invalid JSON format: " + e.getMessage()) + "}";
+        }
+        
+        PlanApply.Result result;
+        try {
+            result = new PlanApply(client, this::resolveTypeId, properties.getWriteConcurrency())
+                    .run(projectId, tasks, Boolean.TRUE.equals(deleteMissing), Boolean.TRUE.equals(dryRun),
+                            ProgressReporter.from(toolContext));
+        } catch (IllegalArgumentException e) {
+            return "{\"success\":false,\"error\":" + toJsonString(e.getMessage()) + "}";
         }
+        if (result.applied() > 0) {
+            resources.workPackagesWritten(projectId);
+        }
+        
+        PlanApply.Diff diff = result.diff();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", result.errors().isEmpty());
+        response.put("dryRun", Boolean.TRUE.equals(dryRun));
+        response.put("create", diff.creates().stream().map(PlanApply.Task::key).toList());
+        response.put("update", diff.updates().stream()
+                .map(update -> Map.of("key", update.key(), "id", update.current().getId(), "changes", update.changes()))
+                .toList());
+        response.put("addRelations", diff.relationsToAdd().stream()
+                .map(dependency -> Map.of("key", dependency.key(), "dependsOn", dependency.dependsOn()))
+                .toList());
+        response.put("removeRelations", diff.relationsToRemove().stream()
+                .map(dependency -> Map.of("key", dependency.key(), "dependsOn", dependency.dependsOn(),
+                        "relationId", dependency.relationId()))
+                .toList());
+        response.put("delete", diff.deletes().entrySet().stream()
+                .map(entry -> Map.of("key", entry.getKey(), "id", entry.getValue().getId()))
+                .toList());
+        response.put("unchanged", diff.unchanged());
+        response.put("applied", result.applied());
+        response.put("ids", result.ids());
+        if (!result.errors().isEmpty()) {
+            response.put("errors", result.errors());
+        }
+        return toJson(response);
+    }
+    
+    @Tool(description = "Import work packages and their dependencies from a CSV or NDJSON file in the import " +
+          "directory, e.g. a plan exported from a spreadsheet. Columns: key, subject, startDate, dueDate, " +
+          "description, type, dependsOn (keys of predecessors, separated by ';'). Every row is checked and " +
+          "its outcome written to a result file; only the counts are returned.")
+    public String importWorkPackages(
+            @ToolParam(description = "Project identifier (slug) or numeric ID") 
+            String projectId,
+            @ToolParam(description = "File name in the import directory, ending in .csv or .ndjson") 
+            String fileName,
+            ToolContext toolContext) {
+        
+        log.info("Importing {} into project {}", fileName, projectId);
+        Path directory = Path.of(properties.getImportDirectory()).toAbsolutePath().normalize();
+        Path file = directory.resolve(fileName).normalize();
+        if (!file.startsWith(directory) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No file '" + fileName + "' in the import directory " + directory);
+        }
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        WorkPackageImport.Format format;
+        if (name.endsWith(".csv")) {
+            format = WorkPackageImport.Format.CSV;
+        } else if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            format = WorkPackageImport.Format.NDJSON;
+        } else {
+            throw new IllegalArgumentException("Unsupported file type '" + fileName + "', use .csv or .ndjson");
+        }
+        
+        WorkPackageImport.Result result = new WorkPackageImport(client, this::resolveTypeId, properties.getWriteConcurrency())
+                .run(projectId, file, format, ProgressReporter.from(toolContext));
+        if (result.created() > 0) {
+            resources.workPackagesWritten(projectId);
+        }
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", result.invalid() == 0 && result.failed() == 0 && result.relationsFailed() == 0);
+        response.put("resultFile", result.resultFile().toString());
+        response.put("rows", result.rows());
+        response.put("created", result.created());
+        response.put("invalid", result.invalid());
+        response.put("failed", result.failed());
+        response.put("relationsCreated", result.relationsCreated());
+        response.put("relationsFailed", result.relationsFailed());
+        return toJson(response);
+    }
+    
+    @Tool(description = "Copy all work packages and their dependencies from one project into another, " +
+          "e.g. to start a new project from a template project. IDs are remapped and dates can be shifted. " +
+          "Source and target must be different projects. " +
+          "Returns the mapping of source to new work package IDs.")
+    public String copyPlan(
+            @ToolParam(description = "Source project identifier (slug) or numeric ID") 
+            String sourceProjectId,
+            @ToolParam(description = "Target project identifier (slug) or numeric ID") 
+            String targetProjectId,
+            @ToolParam(description = "Optional number of days to shift all start and due dates, may be negative") 
+            Integer dateOffsetDays,
+            ToolContext toolContext) {
+        
+        log.info("Copying plan from project {} to {}", sourceProjectId, targetProjectId);
+        PlanCopy.Result result = new PlanCopy(client, properties.getWriteConcurrency()).run(
+                sourceProjectId, targetProjectId, dateOffsetDays != null ? dateOffsetDays : 0,
+                ProgressReporter.from(toolContext));
+        if (!result.idMapping().isEmpty()) {
+            resources.workPackagesWritten(targetProjectId);
+        }
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", result.error() == null);
+        if (result.error() != null) {
+            response.put("error", result.error());
+        }
+        response.put("workPackagesCreated", result.idMapping().size());
+        response.put("relationsCreated", result.relationsCreated());
+        response.put("relationsSkipped", result.relationsSkipped());
+        response.put("idMapping", result.idMapping());
+        return toJson(response);
     }
     
     @Tool(description = "Delete a work package by its ID")
@@ -155,9 +667,246 @@ public class OpenProjectTools {
         
         log.info("Deleting work package {}", workPackageId);
         client.deleteWorkPackage(workPackageId);
+        resources.workPackageDeleted(workPackageId);
         return "{\"success\":true,\"deleted\":" + workPackageId + "}";
     }
     
+    /**
+     * Run a create operation at most once per idempotency key, if one was given
+     */
+    private String idempotent(String tool, String idempotencyKey, Supplier<String> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        return idempotencyStore.execute(tool + ":" + idempotencyKey, action);
+    }
+    
+    /**
+     * Statistics from groupBy counts, four small requests regardless of project size.
+     * Empty if the server does not support grouping by one of the attributes.
+     */
+    private Optional<Map<String, Object>> groupedStatistics(String projectId, WorkPackageQuery allWorkPackages, 
+                                                            LocalDate today) {
+        Optional<Map<String, Integer>> byStatus = client.countWorkPackagesGroupedBy(projectId, allWorkPackages, "status");
+        Optional<Map<String, Integer>> byType = byStatus.isPresent()
+                ? client.countWorkPackagesGroupedBy(projectId, allWorkPackages, "type") : Optional.empty();
+        Optional<Map<String, Integer>> byAssignee = byType.isPresent()
+                ? client.countWorkPackagesGroupedBy(projectId, allWorkPackages, "assignee") : Optional.empty();
+        if (byAssignee.isEmpty()) {
+            return Optional.empty();
+        }
+        
+        WorkPackageQuery overdueQuery = new WorkPackageQuery();
+        overdueQuery.setStatusState("open");
+        overdueQuery.setDueDateTo(today.minusDays(1).toString());
+        Map<String, Integer> overdueByStatus = client.countWorkPackagesGroupedBy(projectId, overdueQuery, "status")
+                .orElse(Map.of());
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("source", "groupBy");
+        result.put("total", byStatus.get().values().stream().mapToInt(Integer::intValue).sum());
+        result.put("byStatus", byStatus.get());
+        result.put("byType", byType.get());
+        result.put("byAssignee", byAssignee.get());
+        result.put("overdue", overdueByStatus.values().stream().mapToInt(Integer::intValue).sum());
+        result.put("overdueByStatus", overdueByStatus);
+        return Optional.of(result);
+    }
+    
+    private String linkName(WorkPackage.Link link) {
+        return link.getTitle() != null ? link.getTitle() : referenceData.nameForHref(link.getHref()).orElse(null);
+    }
+    
+    private boolean isClosed(WorkPackage wp) {
+        WorkPackage.Link status = wp.getLinks() != null ? wp.getLinks().getStatus() : null;
+        return status != null && referenceData.isClosedStatus(ReferenceDataCache.idFromHref(status.getHref()));
+    }
+    
+    /**
+     * Translate the filter parameters of the list tools into a query, resolving names via the reference data cache
+     */
+    private WorkPackageQuery toQuery(String status, String type, String assignee,
+                                     String startDateFrom, String startDateTo,
+                                     String dueDateFrom, String dueDateTo,
+                                     String subjectContains, String sortBy) {
+        WorkPackageQuery query = new WorkPackageQuery();
+        
+        if (STATUS_STATES.contains(String.valueOf(trimToNull(status)).toLowerCase(Locale.ROOT))) {
+            query.setStatusState(status.trim());
+        } else {
+            for (String name : splitList(status)) {
+                query.getStatusIds().add(referenceData.statusId(name).orElseThrow(() ->
+                        new IllegalArgumentException("Unknown status '" + name + "'")));
+            }
+        }
+        for (String name : splitList(type)) {
+            query.getTypeIds().add(referenceData.typeId(name).orElseThrow(() ->
+                    new IllegalArgumentException("Unknown work package type '" + name + "'")));
+        }
+        for (String name : splitList(assignee)) {
+            if (name.equalsIgnoreCase("me")) {
+                query.setAssigneeMe(true);
+            } else if (name.chars().allMatch(Character::isDigit)) {
+                query.getAssigneeIds().add(Integer.valueOf(name));
+            } else {
+                query.getAssigneeIds().add(referenceData.principalId(name).orElseThrow(() ->
+                        new IllegalArgumentException("Unknown assignee '" + name + "'")));
+            }
+        }
+        
+        query.setStartDateFrom(trimToNull(startDateFrom));
+        query.setStartDateTo(trimToNull(startDateTo));
+        query.setDueDateFrom(trimToNull(dueDateFrom));
+        query.setDueDateTo(trimToNull(dueDateTo));
+        query.setSubjectContains(trimToNull(subjectContains));
+        
+        for (String criterion : splitList(sortBy)) {
+            String[] parts = criterion.split(":", 2);
+            String direction = parts.length > 1 ? parts[1].trim().toLowerCase(Locale.ROOT) : "asc";
+            if (!direction.equals("asc") && !direction.equals("desc")) {
+                throw new IllegalArgumentException("Invalid sort direction '" + parts[1] + "', use asc or desc");
+            }
+            query.sortBy(parts[0].trim(), direction);
+        }
+        return query;
+    }
+    
+    private static List<String> splitList(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(part -> !part.isEmpty())
+                .toList();
+    }
+    
+    private static String trimToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+    
+    /**
+     * Resolve a type name via the reference data cache, falling back to the default type
+     */
+    private Integer resolveTypeId(String type) {
+        if (type == null || type.isBlank()) {
+            return referenceData.defaultTypeId().orElse(null);
+        }
+        return referenceData.typeId(type).orElseThrow(() -> new IllegalArgumentException(
+                "Unknown work package type '" + type + "'. Known types: "
+                        + referenceData.types().stream().map(Type::getName).toList()));
+    }
+    
+    /**
+     * Fill in missing type, status, priority and assignee names from the reference data cache
+     */
+    private List<WorkPackage> withReferenceNames(List<WorkPackage> workPackages) {
+        for (WorkPackage wp : workPackages) {
+            WorkPackage.Links links = wp.getLinks();
+            if (links != null) {
+                fillTitle(links.getType());
+                fillTitle(links.getStatus());
+                fillTitle(links.getPriority());
+                fillTitle(links.getAssignee());
+            }
+        }
+        return workPackages;
+    }
+    
+    private void fillTitle(WorkPackage.Link link) {
+        if (link != null && link.getTitle() == null) {
+            referenceData.nameForHref(link.getHref()).ifPresent(link::setTitle);
+        }
+    }
+    
+    /**
+     * The whole list as before if it fits into the byte budget and no limit is given, otherwise
+     * its first page, with a cursor for the rest if there is more. Items are serialized once,
+     * to measure them and for the response, and kept serialized in the snapshot.
+     */
+    private String paged(String field, LastKnown<?> result, List<?> items, Integer limit) {
+        List<String> serialized = new ArrayList<>(items.size());
+        for (Object item : items) {
+            serialized.add(toJsonString(item));
+        }
+        int end = pageEnd(serialized, 0, limit);
+        if (limit == null && end == serialized.size()) {
+            return toJson(markStale(result, serialized.stream().map(RawValue::new).toList(), field));
+        }
+        
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        if (result.stale()) {
+            attributes.put("stale", true);
+            attributes.put("fetchedAt", result.fetchedAt().toString());
+        }
+        PageSnapshots.Snapshot snapshot = new PageSnapshots.Snapshot(field, serialized, attributes);
+        String snapshotId = end < serialized.size() ? pageSnapshots.put(snapshot) : null;
+        return page(snapshot, snapshotId, 0, end);
+    }
+    
+    private String nextPage(String cursor, Integer limit) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor '" + cursor + "'");
+        }
+        if (parts.length != 2 || !parts[1].matches("\\d+")) {
+            throw new IllegalArgumentException("Invalid cursor '" + cursor + "'");
+        }
+        PageSnapshots.Snapshot snapshot = pageSnapshots.get(parts[0]).orElseThrow(() -> new IllegalArgumentException(
+                "The cursor has expired, list again without a cursor"));
+        int offset = Math.min(Integer.parseInt(parts[1]), snapshot.items().size());
+        log.info("Serving {} from offset {} of a snapshot", snapshot.field(), offset);
+        return page(snapshot, parts[0], offset, pageEnd(snapshot.items(), offset, limit));
+    }
+    
+    private String page(PageSnapshots.Snapshot snapshot, String snapshotId, int offset, int end) {
+        Map<String, Object> response = new LinkedHashMap<>(snapshot.attributes());
+        response.put(snapshot.field(), snapshot.items().subList(offset, end).stream().map(RawValue::new).toList());
+        response.put("count", end - offset);
+        response.put("total", snapshot.items().size());
+        if (end < snapshot.items().size()) {
+            String position = snapshotId + ":" + end;
+            response.put("nextCursor", Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(position.getBytes(StandardCharsets.UTF_8)));
+        }
+        return toJson(response);
+    }
+    
+    /**
+     * End of the page starting at offset: up to limit items, as long as they fit into the byte
+     * budget, but at least one so paging always moves on. Items are written as they were
+     * serialized, so their UTF-8 size plus the ", " between them is what they take in the response.
+     */
+    private int pageEnd(List<String> items, int offset, Integer limit) {
+        int maxItems = limit != null && limit > 0 ? limit : Integer.MAX_VALUE;
+        long bytes = 0;
+        int end = offset;
+        while (end < items.size() && end - offset < maxItems) {
+            bytes += items.get(end).getBytes(StandardCharsets.UTF_8).length + 2;
+            if (end > offset && bytes > properties.getResponseByteBudget()) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+    
+    /**
+     * The value itself, or for a stale fallback an object that says so and when the data was fetched
+     */
+    private Object markStale(LastKnown<?> result, Object value, String field) {
+        if (!result.stale()) {
+            return value;
+        }
+        Map<String, Object> stale = new LinkedHashMap<>();
+        stale.put("stale", true);
+        stale.put("fetchedAt", result.fetchedAt().toString());
+        stale.put(field, value);
+        return stale;
+    }
+    
     private String toJson(Object obj) {
         try {
             return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
@@ -167,12 +916,26 @@ public class OpenProjectTools {
         }
     }
     
+    private String toJsonString(Object obj) {
+        try {
+            return objectMapper.writeValueAsString(obj);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize to JSON", e);
+            return "null";
+        }
+    }
+    
     // Inner class for parsing task definitions
     private static class TaskDefinition {
         public String subject;
         public String startDate;
         public String dueDate;
+        /**
+         * Working days including the start day, 0 for a milestone; replaces the dates
+         */
+        public Integer duration;
         public String description;
+        public String type;
         public int[] dependsOn;
     }
 }
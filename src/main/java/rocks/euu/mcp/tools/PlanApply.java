@@ -0,0 +1,412 @@
+package rocks.euu.mcp.tools;
+
+import rocks.euu.mcp.cache.ReferenceDataCache;
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.client.WorkPackageQuery;
+import rocks.euu.mcp.model.Relation;
+import rocks.euu.mcp.model.WorkPackage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Brings a project in line with a desired plan of keyed tasks.
+ * 
+ * The key of a task is kept in a marker comment at the end of the work package description,
+ * which the rendered description does not show. The current state is read with one paged
+ * scan of the project plus the relations of its keyed work packages; the diff against the
+ * desired tasks holds only the creates, field updates, relation adds and removes and, if
+ * asked for, deletes that are needed, so applying an unchanged plan sends no writes. The
+ * operations run with bounded concurrency in three stages: work packages, then the
+ * relations between them, then deletes. Work packages without a key are never touched.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class PlanApply {
+    
+    private static final Pattern KEY = Pattern.compile("[\\w.-]+");
+    private static final Pattern KEY_MARKER = Pattern.compile("\\s*<!-- plan-key: ([\\w.-]+) -->\\s*$");
+    
+    private final OpenProjectClient client;
+    private final Function<String, Integer> typeResolver;
+    private final int concurrency;
+    
+    /**
+     * A task of the desired plan. Null fields are left as they are on existing work packages;
+     * dependsOn lists the keys of the predecessors.
+     */
+    record Task(String key, String subject, String startDate, String dueDate, String description,
+                String type, List<String> dependsOn) {
+    }
+    
+    /**
+     * A changed field of an existing work package
+     */
+    record Change(Object from, Object to) {
+    }
+    
+    record Update(String key, WorkPackage current, Map<String, Change> changes) {
+    }
+    
+    /**
+     * A "follows" relation from the work package of key to the one of dependsOn;
+     * relationId is null for relations that do not exist yet
+     */
+    record Dependency(String key, String dependsOn, Integer relationId) {
+    }
+    
+    record Diff(List<Task> creates, List<Update> updates, List<Dependency> relationsToAdd,
+                List<Dependency> relationsToRemove, Map<String, WorkPackage> deletes, int unchanged) {
+        
+        int size() {
+            return creates.size() + updates.size() + relationsToAdd.size() + relationsToRemove.size() + deletes.size();
+        }
+    }
+    
+    /**
+     * Outcome of an apply; ids maps every key of the plan to its work package, errors lists
+     * the operations that failed
+     */
+    record Result(Diff diff, Map<String, Integer> ids, int applied, List<String> errors) {
+    }
+    
+    Result run(String projectId, List<Task> tasks, boolean deleteMissing, boolean dryRun, ProgressReporter progress) {
+        validate(tasks);
+        
+        WorkPackageQuery allWorkPackages = WorkPackageQuery.none();
+        allWorkPackages.setStatusState("all");
+        allWorkPackages.sortBy("id", "asc");
+        Map<String, WorkPackage> current = new LinkedHashMap<>();
+        for (WorkPackage workPackage : client.streamWorkPackages(projectId, allWorkPackages).toIterable()) {
+            String key = keyOf(workPackage);
+            if (key != null && current.putIfAbsent(key, workPackage) != null) {
+                log.warn("Work package {} repeats plan key '{}' in project {}, ignoring it",
+                        workPackage.getId(), key, projectId);
+            }
+        }
+        List<Dependency> currentDependencies = currentDependencies(current);
+        
+        Diff diff = diff(tasks, current, currentDependencies, deleteMissing);
+        Map<String, Integer> ids = new ConcurrentHashMap<>();
+        current.forEach((key, workPackage) -> {
+            if (!diff.deletes().containsKey(key)) {
+                ids.put(key, workPackage.getId());
+            }
+        });
+        log.info("Plan for project {}: {} creates, {} updates, {} relations to add, {} to remove, {} deletes, {} unchanged",
+                projectId, diff.creates().size(), diff.updates().size(), diff.relationsToAdd().size(),
+                diff.relationsToRemove().size(), diff.deletes().size(), diff.unchanged());
+        if (dryRun || diff.size() == 0) {
+            return new Result(diff, new TreeMap<>(ids), 0, List.of());
+        }
+        
+        int total = diff.size();
+        AtomicInteger applied = new AtomicInteger();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        Function<String, Mono<Void>> done = what -> Mono.fromRunnable(
+                () -> progress.report(applied.incrementAndGet(), total, what));
+        
+        // Stage 1: work packages
+        Flux.concat(
+                Flux.fromIterable(diff.creates())
+                        .map(task -> attempt(client.createWorkPackageAsync(projectId, task.subject(),
+                                        task.startDate(), task.dueDate(), withKey(task.description(), task.key()),
+                                        typeResolver.apply(task.type()))
+                                .doOnNext(created -> ids.put(task.key(), created.getId()))
+                                .then(done.apply("Created '" + task.key() + "'")),
+                                "create '" + task.key() + "'", errors)),
+                Flux.fromIterable(diff.updates())
+                        .map(update -> attempt(update(update)
+                                .then(done.apply("Updated '" + update.key() + "'")),
+                                "update '" + update.key() + "'", errors)))
+                .flatMap(Function.identity(), concurrency)
+                .then()
+                .block();
+        
+        // Stage 2: relations, removes first so that a reordered chain never forms a cycle
+        Flux.fromIterable(diff.relationsToRemove())
+                .flatMap(dependency -> attempt(client.deleteRelationAsync(dependency.relationId())
+                        .then(done.apply("Removed '" + dependency.key() + "' -> '" + dependency.dependsOn() + "'")),
+                        "remove relation '" + dependency.key() + "' -> '" + dependency.dependsOn() + "'", errors),
+                        concurrency)
+                .then()
+                .block();
+        Flux.fromIterable(diff.relationsToAdd())
+                .flatMap(dependency -> {
+                    String what = "relation '" + dependency.key() + "' -> '" + dependency.dependsOn() + "'";
+                    Integer fromId = ids.get(dependency.key());
+                    Integer toId = ids.get(dependency.dependsOn());
+                    if (fromId == null || toId == null) {
+                        errors.add("add " + what + ": work package was not created");
+                        return Mono.empty();
+                    }
+                    return attempt(client.createRelationAsync(fromId, toId, "follows")
+                            .then(done.apply("Added " + what)), "add " + what, errors);
+                }, concurrency)
+                .then()
+                .block();
+        
+        // Stage 3: deletes, which also remove the relations of the deleted work packages
+        Flux.fromIterable(diff.deletes().entrySet())
+                .flatMap(entry -> attempt(client.deleteWorkPackageAsync(entry.getValue().getId())
+                        .then(done.apply("Deleted '" + entry.getKey() + "'")),
+                        "delete '" + entry.getKey() + "'", errors), concurrency)
+                .then()
+                .block();
+        
+        log.info("Applied {} of {} changes to project {}", applied.get(), total, projectId);
+        return new Result(diff, new TreeMap<>(ids), applied.get(), List.copyOf(errors));
+    }
+    
+    Diff diff(List<Task> tasks, Map<String, WorkPackage> current, List<Dependency> currentDependencies,
+                     boolean deleteMissing) {
+        List<Task> creates = new ArrayList<>();
+        List<Update> updates = new ArrayList<>();
+        int unchanged = 0;
+        for (Task task : tasks) {
+            WorkPackage workPackage = current.get(task.key());
+            if (workPackage == null) {
+                if (task.subject() == null) {
+                    throw new IllegalArgumentException("Task '" + task.key() + "' does not exist yet and needs a subject");
+                }
+                creates.add(task);
+                continue;
+            }
+            Map<String, Change> changes = changes(task, workPackage);
+            if (changes.isEmpty()) {
+                unchanged++;
+            } else {
+                updates.add(new Update(task.key(), workPackage, changes));
+            }
+        }
+        
+        Map<String, WorkPackage> deletes = new LinkedHashMap<>();
+        if (deleteMissing) {
+            Set<String> desiredKeys = new HashSet<>();
+            tasks.forEach(task -> desiredKeys.add(task.key()));
+            current.forEach((key, workPackage) -> {
+                if (!desiredKeys.contains(key)) {
+                    deletes.put(key, workPackage);
+                }
+            });
+        }
+        
+        Set<List<String>> desired = new LinkedHashSet<>();
+        for (Task task : tasks) {
+            if (task.dependsOn() != null) {
+                task.dependsOn().forEach(predecessor -> desired.add(List.of(task.key(), predecessor)));
+            }
+        }
+        Set<List<String>> existing = new HashSet<>();
+        List<Dependency> relationsToRemove = new ArrayList<>();
+        for (Dependency dependency : currentDependencies) {
+            List<String> pair = List.of(dependency.key(), dependency.dependsOn());
+            if (!existing.add(pair) || !desired.contains(pair)) {
+                // Deleting a work package already removes its relations
+                if (!deletes.containsKey(dependency.key()) && !deletes.containsKey(dependency.dependsOn())) {
+                    relationsToRemove.add(dependency);
+                }
+            }
+        }
+        List<Dependency> relationsToAdd = desired.stream()
+                .filter(pair -> !existing.contains(pair))
+                .map(pair -> new Dependency(pair.get(0), pair.get(1), null))
+                .toList();
+        
+        return new Diff(creates, updates, relationsToAdd, relationsToRemove, deletes, unchanged);
+    }
+    
+    /**
+     * The plan key from the description marker, null for work packages not created by a plan
+     */
+    static String keyOf(WorkPackage workPackage) {
+        String raw = workPackage.getDescription() != null ? workPackage.getDescription().getRaw() : null;
+        Matcher matcher = raw != null ? KEY_MARKER.matcher(raw) : null;
+        return matcher != null && matcher.find() ? matcher.group(1) : null;
+    }
+    
+    static String withKey(String description, String key) {
+        String text = description != null ? description.strip() : "";
+        return (text.isEmpty() ? "" : text + "\n\n") + "<!-- plan-key: " + key + " -->";
+    }
+    
+    private static void validate(List<Task> tasks) {
+        Set<String> keys = new HashSet<>();
+        for (Task task : tasks) {
+            if (task.key() == null || !KEY.matcher(task.key()).matches()) {
+                throw new IllegalArgumentException("Invalid task key '" + task.key()
+                        + "', use letters, digits, '_', '.' and '-'");
+            }
+            if (!keys.add(task.key())) {
+                throw new IllegalArgumentException("Duplicate task key '" + task.key() + "'");
+            }
+            for (String date : new String[] {task.startDate(), task.dueDate()}) {
+                try {
+                    if (date != null) {
+                        LocalDate.parse(date);
+                    }
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Invalid date '" + date + "' in task '" + task.key() + "'");
+                }
+            }
+        }
+        for (Task task : tasks) {
+            for (String predecessor : task.dependsOn() != null ? task.dependsOn() : List.<String>of()) {
+                if (predecessor.equals(task.key())) {
+                    throw new IllegalArgumentException("Task '" + task.key() + "' depends on itself");
+                }
+                if (!keys.contains(predecessor)) {
+                    throw new IllegalArgumentException("Task '" + task.key() + "' depends on unknown key '" + predecessor + "'");
+                }
+            }
+        }
+    }
+    
+    private Map<String, Change> changes(Task task, WorkPackage workPackage) {
+        Map<String, Change> changes = new LinkedHashMap<>();
+        if (task.subject() != null && !task.subject().equals(workPackage.getSubject())) {
+            changes.put("subject", new Change(workPackage.getSubject(), task.subject()));
+        }
+        if (task.startDate() != null && !task.startDate().equals(workPackage.getStartDate())) {
+            changes.put("startDate", new Change(workPackage.getStartDate(), task.startDate()));
+        }
+        if (task.dueDate() != null && !task.dueDate().equals(workPackage.getDueDate())) {
+            changes.put("dueDate", new Change(workPackage.getDueDate(), task.dueDate()));
+        }
+        if (task.description() != null) {
+            String currentRaw = workPackage.getDescription() != null ? workPackage.getDescription().getRaw() : null;
+            String desiredRaw = withKey(task.description(), task.key());
+            if (!desiredRaw.equals(currentRaw)) {
+                changes.put("description", new Change(withoutKey(currentRaw), task.description()));
+            }
+        }
+        if (task.type() != null) {
+            WorkPackage.Link type = workPackage.getLinks() != null ? workPackage.getLinks().getType() : null;
+            Integer currentTypeId = type != null ? ReferenceDataCache.idFromHref(type.getHref()) : null;
+            if (!Objects.equals(typeResolver.apply(task.type()), currentTypeId)) {
+                changes.put("type", new Change(type != null ? type.getTitle() : null, task.type()));
+            }
+        }
+        return changes;
+    }
+    
+    /**
+     * Send the changes, based on the lock version from the scan. Changing a predecessor's dates
+     * makes OpenProject reschedule its followers, which bumps their lock versions while the
+     * updates run in parallel; on such a conflict the work package is read again and the
+     * changes are sent once more on top of the new version.
+     */
+    private Mono<WorkPackage> update(Update update) {
+        WorkPackage current = update.current();
+        return update(update, current.getLockVersion())
+                .onErrorResume(PlanApply::isConflict, e -> {
+                    log.debug("Work package {} changed since the scan, retrying '{}' with its new lock version",
+                            current.getId(), update.key());
+                    return client.getWorkPackages(List.of(current.getId()), 1)
+                            .next()
+                            .switchIfEmpty(Mono.error(e))
+                            .flatMap(latest -> update(update, latest.getLockVersion()));
+                });
+    }
+    
+    private Mono<WorkPackage> update(Update update, Integer lockVersion) {
+        Map<String, Change> changes = update.changes();
+        Change description = changes.get("description");
+        Change type = changes.get("type");
+        return client.updateWorkPackageAsync(update.current().getId(),
+                lockVersion != null ? lockVersion : 0,
+                newValue(changes, "subject"),
+                newValue(changes, "startDate"),
+                newValue(changes, "dueDate"),
+                description != null ? withKey((String) description.to(), update.key()) : null,
+                type != null ? typeResolver.apply((String) type.to()) : null);
+    }
+    
+    private static String newValue(Map<String, Change> changes, String field) {
+        Change change = changes.get(field);
+        return change != null ? (String) change.to() : null;
+    }
+    
+    private static String withoutKey(String raw) {
+        return raw != null ? KEY_MARKER.matcher(raw).replaceFirst("") : null;
+    }
+    
+    /**
+     * The "follows" relations between keyed work packages, as successor and predecessor keys
+     */
+    private List<Dependency> currentDependencies(Map<String, WorkPackage> current) {
+        if (current.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, String> keysById = new LinkedHashMap<>();
+        current.forEach((key, workPackage) -> keysById.put(workPackage.getId(), key));
+        
+        Set<Integer> seen = new HashSet<>();
+        List<Dependency> dependencies = new ArrayList<>();
+        for (Relation relation : client.streamRelations(keysById.keySet()).toIterable()) {
+            if (!seen.add(relation.getId()) || relation.getLinks() == null) {
+                continue;
+            }
+            String from = keysById.get(idOf(relation.getLinks().getFrom()));
+            String to = keysById.get(idOf(relation.getLinks().getTo()));
+            if (from == null || to == null) {
+                continue;
+            }
+            // OpenProject may store a "follows" relation as "precedes" in the other direction
+            if ("follows".equals(relation.getType())) {
+                dependencies.add(new Dependency(from, to, relation.getId()));
+            } else if ("precedes".equals(relation.getType())) {
+                dependencies.add(new Dependency(to, from, relation.getId()));
+            }
+        }
+        return dependencies;
+    }
+    
+    private static Integer idOf(Relation.Link link) {
+        return link != null ? ReferenceDataCache.idFromHref(link.getHref()) : null;
+    }
+    
+    /**
+     * Whether OpenProject rejected a write with 409, e.g. for an outdated lock version
+     */
+    private static boolean isConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof WebClientResponseException response && response.getStatusCode().value() == 409) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Record a failed operation instead of failing the stage, so independent changes still apply
+     */
+    private static Mono<Void> attempt(Mono<?> operation, String what, List<String> errors) {
+        return operation.then()
+                .onErrorResume(e -> {
+                    log.warn("Failed to {}: {}", what, e.getMessage());
+                    errors.add(what + ": " + e.getMessage());
+                    return Mono.empty();
+                });
+    }
+}
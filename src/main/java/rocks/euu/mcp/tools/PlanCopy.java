@@ -0,0 +1,129 @@
+package rocks.euu.mcp.tools;
+
+import rocks.euu.mcp.cache.ReferenceDataCache;
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.client.WorkPackageQuery;
+import rocks.euu.mcp.model.Relation;
+import rocks.euu.mcp.model.WorkPackage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies the work packages and relations of one project into another.
+ * 
+ * Work packages are streamed page by page out of the source project into a create stage
+ * with bounded concurrency. The create stage only requests the next work package when a
+ * slot is free, so no more than one page is held in memory. Once all work packages
+ * exist, the relations between them are streamed and recreated between the new IDs in
+ * the same way; relations to work packages outside the source project are skipped.
+ * 
+ * Source and target must be different projects: new work packages in the source would
+ * show up in later pages of the stream and be copied again, without end.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class PlanCopy {
+    
+    private final OpenProjectClient client;
+    private final int concurrency;
+    
+    /**
+     * Outcome of a copy; error is null if everything was copied
+     */
+    record Result(Map<Integer, Integer> idMapping, int relationsCreated, int relationsSkipped, String error) {
+    }
+    
+    /**
+     * @throws IllegalArgumentException if both IDs name the same project, e.g. by identifier and by numeric ID
+     */
+    Result run(String sourceProjectId, String targetProjectId, int dateOffsetDays, ProgressReporter progress) {
+        Integer sourceId = client.getProject(sourceProjectId).getId();
+        Integer targetId = client.getProject(targetProjectId).getId();
+        if (sourceId.equals(targetId)) {
+            throw new IllegalArgumentException("Cannot copy project " + sourceProjectId + " into itself; "
+                    + "source and target are both project " + sourceId);
+        }
+        
+        WorkPackageQuery allWorkPackages = WorkPackageQuery.none();
+        allWorkPackages.setStatusState("all");
+        allWorkPackages.sortBy("id", "asc");
+        
+        Map<Integer, Integer> idMapping = new ConcurrentHashMap<>();
+        AtomicInteger relationsCreated = new AtomicInteger();
+        AtomicInteger relationsSkipped = new AtomicInteger();
+        
+        try {
+            int total = client.countWorkPackages(sourceProjectId, allWorkPackages);
+            
+            client.streamWorkPackages(sourceProjectId, allWorkPackages)
+                    .flatMap(source -> client.createWorkPackageAsync(
+                                    targetProjectId,
+                                    source.getSubject(),
+                                    shift(source.getStartDate(), dateOffsetDays),
+                                    shift(source.getDueDate(), dateOffsetDays),
+                                    source.getDescription() != null ? source.getDescription().getRaw() : null,
+                                    typeId(source))
+                            .doOnNext(created -> {
+                                idMapping.put(source.getId(), created.getId());
+                                progress.report(idMapping.size(), total,
+                                        "Copied work package '" + source.getSubject() + "'");
+                            }), concurrency)
+                    .then()
+                    .block();
+            
+            Set<Integer> seenRelations = ConcurrentHashMap.newKeySet();
+            client.streamRelations(idMapping.keySet())
+                    .filter(relation -> seenRelations.add(relation.getId()))
+                    .filter(relation -> {
+                        boolean internal = relation.getLinks() != null
+                                && mapped(idMapping, relation.getLinks().getFrom()) != null
+                                && mapped(idMapping, relation.getLinks().getTo()) != null;
+                        if (!internal) {
+                            relationsSkipped.incrementAndGet();
+                        }
+                        return internal;
+                    })
+                    .flatMap(relation -> client.createRelationAsync(
+                                    mapped(idMapping, relation.getLinks().getFrom()),
+                                    mapped(idMapping, relation.getLinks().getTo()),
+                                    relation.getType())
+                            .doOnNext(created -> relationsCreated.incrementAndGet()), concurrency)
+                    .then()
+                    .block();
+            
+        } catch (RuntimeException e) {
+            // Return what was created so far so the caller can clean up or resume
+            log.error("Copying project {} to {} interrupted after {} work packages and {} relations",
+                    sourceProjectId, targetProjectId, idMapping.size(), relationsCreated.get(), e);
+            return new Result(new TreeMap<>(idMapping), relationsCreated.get(), relationsSkipped.get(), e.getMessage());
+        }
+        
+        log.info("Copied {} work packages and {} relations from project {} to {}",
+                idMapping.size(), relationsCreated.get(), sourceProjectId, targetProjectId);
+        return new Result(new TreeMap<>(idMapping), relationsCreated.get(), relationsSkipped.get(), null);
+    }
+    
+    private static String shift(String date, int days) {
+        return date != null && days != 0 ? LocalDate.parse(date).plusDays(days).toString() : date;
+    }
+    
+    private static Integer typeId(WorkPackage workPackage) {
+        return workPackage.getLinks() != null && workPackage.getLinks().getType() != null
+                ? ReferenceDataCache.idFromHref(workPackage.getLinks().getType().getHref()) : null;
+    }
+    
+    /**
+     * The new ID of a relation end, null if it is not a copied work package
+     */
+    private static Integer mapped(Map<Integer, Integer> idMapping, Relation.Link link) {
+        Integer sourceId = link != null ? ReferenceDataCache.idFromHref(link.getHref()) : null;
+        return sourceId != null ? idMapping.get(sourceId) : null;
+    }
+}
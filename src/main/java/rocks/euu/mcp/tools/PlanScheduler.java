@@ -0,0 +1,147 @@
+package rocks.euu.mcp.tools;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Works out the start and due dates of plan tasks from their durations in working days
+ * and their dependencies, before anything is sent to OpenProject.
+ * 
+ * One forward pass over the tasks in topological order (Kahn's algorithm): a task starts
+ * on the first working day after its latest predecessor ends, but not before its own
+ * start date or the plan start. The pass visits every task and dependency once; only
+ * counting out the working days of a duration walks the calendar day by day.
+ */
+final class PlanScheduler {
+    
+    private static final Set<DayOfWeek> WEEKEND = EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
+    
+    private final Set<LocalDate> nonWorkingDays;
+    
+    /**
+     * @param nonWorkingDays days off besides weekends, e.g. public holidays
+     */
+    PlanScheduler(Set<LocalDate> nonWorkingDays) {
+        this.nonWorkingDays = Set.copyOf(nonWorkingDays);
+    }
+    
+    /**
+     * A task to schedule. Tasks with a duration get computed dates; tasks without keep the
+     * dates they have, and their due date counts as the end for their successors.
+     * 
+     * @param duration working days including the start day, 0 for a milestone
+     * @param dependsOn indexes of the predecessors
+     */
+    record Task(LocalDate startDate, LocalDate dueDate, Integer duration, int[] dependsOn) {
+    }
+    
+    record Dates(LocalDate startDate, LocalDate dueDate) {
+    }
+    
+    /**
+     * Dates for every task, in the order of the tasks
+     * 
+     * @throws IllegalArgumentException if a dependency index is invalid or the dependencies form a cycle
+     */
+    List<Dates> schedule(List<Task> tasks, LocalDate planStart) {
+        int n = tasks.size();
+        int[] waitingFor = new int[n];
+        List<List<Integer>> successors = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            successors.add(new ArrayList<>());
+        }
+        for (int i = 0; i < n; i++) {
+            int[] dependsOn = tasks.get(i).dependsOn();
+            for (int predecessor : dependsOn != null ? dependsOn : new int[0]) {
+                if (predecessor < 0 || predecessor >= n || predecessor == i) {
+                    throw new IllegalArgumentException("Task " + i + " depends on invalid task index " + predecessor);
+                }
+                successors.get(predecessor).add(i);
+                waitingFor[i]++;
+            }
+        }
+        
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            if (waitingFor[i] == 0) {
+                ready.add(i);
+            }
+        }
+        LocalDate[] predecessorsEnd = new LocalDate[n];
+        Dates[] dates = new Dates[n];
+        int scheduled = 0;
+        while (!ready.isEmpty()) {
+            int i = ready.poll();
+            Task task = tasks.get(i);
+            Dates taskDates;
+            LocalDate end;
+            if (task.duration() != null) {
+                LocalDate start = latest(task.startDate() != null ? task.startDate() : planStart,
+                        predecessorsEnd[i] != null ? predecessorsEnd[i].plusDays(1) : null);
+                start = nextWorkingDay(start);
+                taskDates = new Dates(start, plusWorkingDays(start, Math.max(task.duration(), 1) - 1));
+                end = taskDates.dueDate();
+            } else {
+                taskDates = new Dates(task.startDate(), task.dueDate());
+                end = task.dueDate() != null ? task.dueDate() : task.startDate();
+                // Undated tasks pass their predecessors' end on, so chains through them still hold
+                end = end != null ? end : predecessorsEnd[i];
+            }
+            dates[i] = taskDates;
+            scheduled++;
+            
+            for (int successor : successors.get(i)) {
+                predecessorsEnd[successor] = latest(predecessorsEnd[successor], end);
+                if (--waitingFor[successor] == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+        
+        if (scheduled < n) {
+            List<Integer> cycle = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (waitingFor[i] > 0) {
+                    cycle.add(i);
+                }
+            }
+            throw new IllegalArgumentException("Dependencies form a cycle, tasks that cannot be scheduled: " + cycle);
+        }
+        return List.of(dates);
+    }
+    
+    boolean isWorkingDay(LocalDate date) {
+        return !WEEKEND.contains(date.getDayOfWeek()) && !nonWorkingDays.contains(date);
+    }
+    
+    private LocalDate nextWorkingDay(LocalDate date) {
+        while (!isWorkingDay(date)) {
+            date = date.plusDays(1);
+        }
+        return date;
+    }
+    
+    private LocalDate plusWorkingDays(LocalDate start, int days) {
+        LocalDate date = start;
+        for (int added = 0; added < days; ) {
+            date = date.plusDays(1);
+            if (isWorkingDay(date)) {
+                added++;
+            }
+        }
+        return date;
+    }
+    
+    private static LocalDate latest(LocalDate a, LocalDate b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,69 @@
+package rocks.euu.mcp.tools;
+
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.mcp.McpToolUtils;
+
+/**
+ * Sends MCP progress notifications for a single tool call.
+ *
+ * Does nothing when the client did not send a progress token or the tool
+ * is called outside of an MCP request (e.g. in unit tests).
+ */
+@Slf4j
+public class ProgressReporter {
+
+    public static final String PROGRESS_TOKEN_KEY = "progressToken";
+
+    private static final ProgressReporter NONE = new ProgressReporter(null, null);
+
+    private final McpSyncServerExchange exchange;
+    private final Object progressToken;
+
+    private ProgressReporter(McpSyncServerExchange exchange, Object progressToken) {
+        this.exchange = exchange;
+        this.progressToken = progressToken;
+    }
+
+    public static ProgressReporter from(ToolContext toolContext) {
+        if (toolContext == null || toolContext.getContext() == null) {
+            return NONE;
+        }
+        Object progressToken = toolContext.getContext().get(PROGRESS_TOKEN_KEY);
+        if (progressToken == null) {
+            return NONE;
+        }
+        return McpToolUtils.getMcpExchange(toolContext)
+                .map(exchange -> new ProgressReporter(exchange, progressToken))
+                .orElse(NONE);
+    }
+
+    /**
+     * Report that {@code progress} of {@code total} steps are done
+     */
+    public void report(int progress, int total, String message) {
+        send(progress, (double) total, message);
+    }
+    
+    /**
+     * Report that {@code progress} steps are done, when the total is not known in advance
+     */
+    public void report(int progress, String message) {
+        send(progress, null, message);
+    }
+    
+    private void send(int progress, Double total, String message) {
+        if (exchange == null) {
+            return;
+        }
+        try {
+            exchange.progressNotification(
+                    new McpSchema.ProgressNotification(progressToken, progress, total, message));
+        } catch (Exception e) {
+            // Progress is best effort, it must never fail the tool call itself
+            log.debug("Failed to send progress notification: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package rocks.euu.mcp.tools;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.client.WorkPackageQuery;
+import rocks.euu.mcp.model.WorkPackage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes the work packages of a project to a file as NDJSON or CSV.
+ * 
+ * Pages are pulled from OpenProject one at a time and each page is written and flushed
+ * before the next one is requested, so memory use stays at one page regardless of the
+ * project size. The file is written under a temporary name and moved into place when
+ * complete, so a failed export never leaves a truncated file behind.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class WorkPackageExport {
+    
+    enum Format {
+        NDJSON("ndjson"), CSV("csv");
+        
+        final String extension;
+        
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+    
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    
+    private static final JsonFactory JSON = new JsonFactory();
+    
+    private static final List<String> COLUMNS = List.of(
+            "id", "subject", "type", "status", "priority", "assignee", "startDate", "dueDate", "estimatedTime");
+    
+    private static final List<Function<WorkPackage, String>> VALUES = List.of(
+            wp -> wp.getId() != null ? wp.getId().toString() : null,
+            WorkPackage::getSubject,
+            wp -> wp.getLinks() != null ? title(wp.getLinks().getType()) : null,
+            wp -> wp.getLinks() != null ? title(wp.getLinks().getStatus()) : null,
+            wp -> wp.getLinks() != null ? title(wp.getLinks().getPriority()) : null,
+            wp -> wp.getLinks() != null ? title(wp.getLinks().getAssignee()) : null,
+            WorkPackage::getStartDate,
+            WorkPackage::getDueDate,
+            WorkPackage::getEstimatedTime);
+    
+    private final OpenProjectClient client;
+    private final Path directory;
+    
+    record Result(Path path, Format format, int rows, int pages, long bytes) {
+    }
+    
+    Result run(String projectId, WorkPackageQuery query, Format format) {
+        Path target = directory.resolve(fileName(projectId, format));
+        Path partial = directory.resolve(target.getFileName() + ".part");
+        int rows = 0;
+        int pages = 0;
+        
+        try {
+            Files.createDirectories(directory);
+            try (Writer writer = Files.newBufferedWriter(partial, StandardCharsets.UTF_8);
+                 JsonGenerator json = JSON.createGenerator(writer)) {
+                json.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                if (format == Format.CSV) {
+                    writeCsvRow(writer, COLUMNS);
+                }
+                
+                // toIterable(1) requests the next page only after this thread took the previous one
+                for (List<WorkPackage> page : client.streamWorkPackagePages(projectId, query).toIterable(1)) {
+                    for (WorkPackage workPackage : page) {
+                        if (format == Format.CSV) {
+                            writeCsvRow(writer, VALUES.stream().map(value -> value.apply(workPackage)).toList());
+                        } else {
+                            writeJsonRow(json, workPackage);
+                        }
+                    }
+                    rows += page.size();
+                    pages++;
+                    json.flush();
+                    writer.flush();
+                }
+                if (format == Format.NDJSON && rows > 0) {
+                    json.flush();
+                    writer.write('\n');
+                }
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            
+            log.info("Exported {} work packages of project {} to {}", rows, projectId, target);
+            return new Result(target.toAbsolutePath(), format, rows, pages, Files.size(target));
+            
+        } catch (IOException e) {
+            deleteQuietly(partial);
+            throw new UncheckedIOException("Failed to write export " + target + ": " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            deleteQuietly(partial);
+            throw e;
+        }
+    }
+    
+    private static void writeJsonRow(JsonGenerator json, WorkPackage workPackage) throws IOException {
+        json.writeStartObject();
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            String value = VALUES.get(i).apply(workPackage);
+            if (i == 0 && value != null) {
+                json.writeNumberField(COLUMNS.get(i), Integer.parseInt(value));
+            } else {
+                json.writeStringField(COLUMNS.get(i), value);
+            }
+        }
+        json.writeEndObject();
+    }
+    
+    /**
+     * One RFC 4180 row: values with separators, quotes or line breaks are quoted
+     */
+    private static void writeCsvRow(Writer writer, List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+    
+    private static String fileName(String projectId, Format format) {
+        String safeProject = projectId.replaceAll("[^A-Za-z0-9_-]", "_");
+        return "work-packages-" + safeProject + "-" + LocalDateTime.now().format(FILE_TIMESTAMP) + "." + format.extension;
+    }
+    
+    private static String title(WorkPackage.Link link) {
+        return link != null ? link.getTitle() : null;
+    }
+    
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+}
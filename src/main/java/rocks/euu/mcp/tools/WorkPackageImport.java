@@ -0,0 +1,409 @@
+package rocks.euu.mcp.tools;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import rocks.euu.mcp.client.OpenProjectClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Imports work packages and their "follows" relations from a CSV or NDJSON file.
+ * 
+ * The file is read as a stream of rows, each row is checked, and valid rows go through a
+ * create stage with bounded concurrency. The reader only produces the next row when the
+ * create stage has a free slot, so imports of any size run at the pace OpenProject allows
+ * with a constant number of rows in memory. Only the mapping from row keys to the new IDs
+ * is kept; the relations are created in a second pass over the file.
+ * 
+ * Every row gets a line in a result file next to the input, so a partly failed import
+ * can be checked and the failed rows retried.
+ * 
+ * Columns (CSV header or NDJSON fields): key, subject, startDate, dueDate, description,
+ * type, dependsOn. The key (or an "id" column, as written by the export) is what
+ * dependsOn refers to; several keys are separated by ';' or ','.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class WorkPackageImport {
+    
+    enum Format { CSV, NDJSON }
+    
+    private static final JsonFactory JSON = new JsonFactory();
+    
+    private final OpenProjectClient client;
+    private final Function<String, Integer> typeResolver;
+    private final int concurrency;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    record Result(Path resultFile, int rows, int created, int invalid, int failed,
+                  int relationsCreated, int relationsFailed) {
+    }
+    
+    /**
+     * One row of the input; error is set when it cannot be read or is invalid
+     */
+    private record Row(long number, String key, String subject, String startDate, String dueDate,
+                       String description, String type, Integer typeId, List<String> dependsOn, String error) {
+    }
+    
+    /**
+     * The fields of one record by lower-case column name, or why the record could not be read
+     */
+    private record Fields(Map<String, String> values, String error) {
+        
+        static Fields of(Map<String, String> values) {
+            return new Fields(values, null);
+        }
+        
+        static Fields invalid(String error) {
+            return new Fields(Map.of(), error);
+        }
+    }
+    
+    /**
+     * A "follows" relation from the row's work package to the one of the predecessor key
+     */
+    private record Dependency(long row, String key, String predecessor) {
+    }
+    
+    /**
+     * Outcome of one create call, written as one line of the result file
+     */
+    private record Outcome(Map<String, Object> line, Row row, Integer id) {
+    }
+    
+    Result run(String projectId, Path file, Format format, ProgressReporter progress) {
+        Path resultFile = file.resolveSibling(file.getFileName() + ".results.ndjson");
+        Map<String, Integer> ids = new ConcurrentHashMap<>();
+        Set<Long> createdRows = ConcurrentHashMap.newKeySet();
+        int rows = 0;
+        int created = 0;
+        int invalid = 0;
+        int failed = 0;
+        int relationsCreated = 0;
+        int relationsFailed = 0;
+        
+        try (Writer writer = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8);
+             JsonGenerator json = JSON.createGenerator(writer)) {
+            json.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            json.setCodec(objectMapper);
+            
+            // Pass 1: work packages
+            Set<String> seenKeys = new HashSet<>();
+            Flux<Outcome> workPackages = rows(file, format)
+                    .map(row -> validate(row, seenKeys))
+                    .flatMapSequential(row -> row.error() != null
+                            ? Mono.just(outcome(row, "invalid", null, row.error()))
+                            : client.createWorkPackageAsync(projectId, row.subject(), row.startDate(), row.dueDate(),
+                                            row.description(), row.typeId())
+                                    .map(wp -> outcome(row, "created", wp.getId(), null))
+                                    .onErrorResume(e -> Mono.just(outcome(row, "failed", null, e.getMessage()))),
+                            concurrency);
+            
+            for (Outcome outcome : workPackages.toIterable(concurrency)) {
+                rows++;
+                switch ((String) outcome.line().get("status")) {
+                    case "created" -> {
+                        created++;
+                        createdRows.add(outcome.row().number());
+                        if (outcome.row().key() != null) {
+                            ids.put(outcome.row().key(), outcome.id());
+                        }
+                    }
+                    case "invalid" -> invalid++;
+                    default -> failed++;
+                }
+                json.writeObject(outcome.line());
+                if (rows % 100 == 0) {
+                    json.flush();
+                    progress.report(rows, "Imported " + rows + " rows");
+                }
+            }
+            
+            // Pass 2: relations between the created work packages. The rows are not validated
+            // again, so only those created in pass 1 count; a rejected duplicate shares its key.
+            Flux<Map<String, Object>> relations = rows(file, format)
+                    .filter(row -> row.key() != null && createdRows.contains(row.number()))
+                    .flatMapIterable(row -> row.dependsOn().stream()
+                            .map(predecessor -> new Dependency(row.number(), row.key(), predecessor))
+                            .toList())
+                    .flatMapSequential(dependency -> {
+                        Map<String, Object> line = new LinkedHashMap<>();
+                        line.put("row", dependency.row());
+                        line.put("key", dependency.key());
+                        line.put("dependsOn", dependency.predecessor());
+                        Integer predecessorId = ids.get(dependency.predecessor());
+                        if (predecessorId == null) {
+                            line.put("status", "failed");
+                            line.put("error", "No work package was created for key '" + dependency.predecessor() + "'");
+                            return Mono.just(line);
+                        }
+                        return client.createRelationAsync(ids.get(dependency.key()), predecessorId, "follows")
+                                .map(relation -> {
+                                    line.put("status", "created");
+                                    return line;
+                                })
+                                .onErrorResume(e -> {
+                                    line.put("status", "failed");
+                                    line.put("error", e.getMessage());
+                                    return Mono.just(line);
+                                });
+                    }, concurrency);
+            
+            for (Map<String, Object> line : relations.toIterable(concurrency)) {
+                if ("created".equals(line.get("status"))) {
+                    relationsCreated++;
+                } else {
+                    relationsFailed++;
+                }
+                json.writeObject(line);
+            }
+            if (rows > 0) {
+                json.flush();
+                writer.write('\n');
+            }
+            
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write import results " + resultFile + ": " + e.getMessage(), e);
+        }
+        
+        log.info("Imported {} rows into project {}: {} created, {} invalid, {} failed, {} relations",
+                rows, projectId, created, invalid, failed, relationsCreated);
+        return new Result(resultFile.toAbsolutePath(), rows, created, invalid, failed, relationsCreated, relationsFailed);
+    }
+    
+    /**
+     * The rows of the file, read lazily on a worker thread as they are requested
+     */
+    private Flux<Row> rows(Path file, Format format) {
+        return Flux.using(
+                        () -> Files.newBufferedReader(file, StandardCharsets.UTF_8),
+                        reader -> format == Format.CSV ? csvRecords(reader) : ndjsonRecords(reader),
+                        reader -> {
+                            try {
+                                reader.close();
+                            } catch (IOException e) {
+                                log.debug("Could not close {}: {}", file, e.getMessage());
+                            }
+                        })
+                .index((index, fields) -> toRow(index + 1, fields))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    private Flux<Fields> csvRecords(BufferedReader reader) {
+        List<String> header;
+        try {
+            header = readCsvRecord(reader);
+        } catch (IOException e) {
+            return Flux.error(new UncheckedIOException(e));
+        }
+        if (header == null) {
+            return Flux.empty();
+        }
+        List<String> columns = header.stream()
+                .map(column -> column.replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT))
+                .toList();
+        
+        return Flux.<Fields>generate(sink -> {
+            try {
+                List<String> record;
+                do {
+                    record = readCsvRecord(reader);
+                } while (record != null && record.stream().allMatch(String::isBlank));
+                if (record == null) {
+                    sink.complete();
+                    return;
+                }
+                Map<String, String> values = new HashMap<>();
+                for (int i = 0; i < columns.size() && i < record.size(); i++) {
+                    values.put(columns.get(i), record.get(i));
+                }
+                sink.next(Fields.of(values));
+            } catch (IOException e) {
+                sink.error(new UncheckedIOException(e));
+            }
+        });
+    }
+    
+    private Flux<Fields> ndjsonRecords(BufferedReader reader) {
+        return Flux.<Fields>generate(sink -> {
+            try {
+                String line;
+                do {
+                    line = reader.readLine();
+                } while (line != null && line.isBlank());
+                if (line == null) {
+                    sink.complete();
+                    return;
+                }
+                Map<String, String> values = new HashMap<>();
+                Fields fields;
+                try {
+                    JsonNode node = objectMapper.readTree(line);
+                    node.fields().forEachRemaining(field -> {
+                        JsonNode value = field.getValue();
+                        String text;
+                        if (value.isArray()) {
+                            List<String> items = new ArrayList<>();
+                            value.forEach(item -> items.add(item.asText()));
+                            text = String.join(";", items);
+                        } else {
+                            text = value.isNull() ? null : value.asText();
+                        }
+                        values.put(field.getKey().toLowerCase(Locale.ROOT), text);
+                    });
+                    fields = Fields.of(values);
+                } catch (IOException e) {
+                    fields = Fields.invalid("Invalid JSON: " + e.getMessage());
+                }
+                sink.next(fields);
+            } catch (IOException e) {
+                sink.error(new UncheckedIOException(e));
+            }
+        });
+    }
+    
+    /**
+     * Read one RFC 4180 record, null at the end of the input
+     */
+    static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean read = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            read = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!read) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    private Row toRow(long number, Fields fields) {
+        if (fields.error() != null) {
+            return new Row(number, null, null, null, null, null, null, null, List.of(), fields.error());
+        }
+        Map<String, String> values = fields.values();
+        String key = blankToNull(values.get("key"));
+        if (key == null) {
+            key = blankToNull(values.get("id"));
+        }
+        String dependsOn = blankToNull(values.get("dependson"));
+        return new Row(number, key,
+                blankToNull(values.get("subject")),
+                blankToNull(values.get("startdate")),
+                blankToNull(values.get("duedate")),
+                blankToNull(values.get("description")),
+                blankToNull(values.get("type")),
+                null,
+                dependsOn == null ? List.of() : Arrays.stream(dependsOn.split("[;,]"))
+                        .map(String::trim)
+                        .filter(s -> !s.isEmpty())
+                        .toList(),
+                null);
+    }
+    
+    /**
+     * Check a row and resolve its type; keys must be unique within the file
+     */
+    private Row validate(Row row, Set<String> seenKeys) {
+        if (row.error() != null) {
+            return row;
+        }
+        String error = null;
+        Integer typeId = null;
+        try {
+            if (row.subject() == null) {
+                error = "Missing subject";
+            } else if (row.key() != null && !seenKeys.add(row.key())) {
+                error = "Duplicate key '" + row.key() + "'";
+            } else {
+                LocalDate start = row.startDate() != null ? LocalDate.parse(row.startDate()) : null;
+                LocalDate due = row.dueDate() != null ? LocalDate.parse(row.dueDate()) : null;
+                if (start != null && due != null && due.isBefore(start)) {
+                    error = "dueDate " + due + " is before startDate " + start;
+                }
+            }
+            typeId = error == null ? typeResolver.apply(row.type()) : null;
+        } catch (DateTimeParseException e) {
+            error = "Invalid date '" + e.getParsedString() + "', expected YYYY-MM-DD";
+        } catch (IllegalArgumentException e) {
+            error = e.getMessage();
+        }
+        return new Row(row.number(), row.key(), row.subject(), row.startDate(), row.dueDate(),
+                row.description(), row.type(), typeId, row.dependsOn(), error);
+    }
+    
+    private static Outcome outcome(Row row, String status, Integer id, String error) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("row", row.number());
+        if (row.key() != null) {
+            line.put("key", row.key());
+        }
+        line.put("status", status);
+        if (id != null) {
+            line.put("id", id);
+        }
+        if (error != null) {
+            line.put("error", error);
+        }
+        return new Outcome(line, row, id);
+    }
+    
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
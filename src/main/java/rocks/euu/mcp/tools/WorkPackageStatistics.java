@@ -0,0 +1,134 @@
+package rocks.euu.mcp.tools;
+
+import rocks.euu.mcp.model.WorkPackage;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Counts work packages by status, type and assignee, overdue work packages and
+ * a due date histogram, one work package at a time.
+ * 
+ * Only the counters are kept (one int per distinct value), so a project of any
+ * size can be aggregated while streaming its pages.
+ */
+class WorkPackageStatistics {
+    
+    private final LocalDate today;
+    private final String histogramBucket;
+    private final Function<WorkPackage.Link, String> linkName;
+    private final Predicate<WorkPackage> isClosed;
+    
+    private final Map<String, int[]> byStatus = new HashMap<>();
+    private final Map<String, int[]> byType = new HashMap<>();
+    private final Map<String, int[]> byAssignee = new HashMap<>();
+    private final Map<String, int[]> overdueByStatus = new HashMap<>();
+    private final Map<String, int[]> dueHistogram = new TreeMap<>();
+    private int total;
+    private int overdue;
+    private int withoutDueDate;
+    
+    /**
+     * @param histogramBucket "week", "month", or null for no histogram
+     * @param linkName resolves a status/type/assignee link to a display name
+     * @param isClosed whether a work package's status is closed
+     */
+    WorkPackageStatistics(LocalDate today, String histogramBucket,
+                          Function<WorkPackage.Link, String> linkName, Predicate<WorkPackage> isClosed) {
+        this.today = today;
+        this.histogramBucket = histogramBucket;
+        this.linkName = linkName;
+        this.isClosed = isClosed;
+    }
+    
+    void accept(WorkPackage wp) {
+        total++;
+        WorkPackage.Links links = wp.getLinks() != null ? wp.getLinks() : new WorkPackage.Links();
+        String status = name(links.getStatus(), "(no status)");
+        increment(byStatus, status);
+        increment(byType, name(links.getType(), "(no type)"));
+        increment(byAssignee, name(links.getAssignee(), "(unassigned)"));
+        
+        LocalDate dueDate = parseDate(wp.getDueDate());
+        if (dueDate == null) {
+            withoutDueDate++;
+            return;
+        }
+        if (dueDate.isBefore(today) && !isClosed.test(wp)) {
+            overdue++;
+            increment(overdueByStatus, status);
+        }
+        if (histogramBucket != null) {
+            increment(dueHistogram, bucket(dueDate));
+        }
+    }
+    
+    Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("source", "stream");
+        result.put("total", total);
+        result.put("byStatus", counts(byStatus));
+        result.put("byType", counts(byType));
+        result.put("byAssignee", counts(byAssignee));
+        result.put("overdue", overdue);
+        result.put("overdueByStatus", counts(overdueByStatus));
+        result.put("withoutDueDate", withoutDueDate);
+        if (histogramBucket != null) {
+            result.put("dueDateHistogram", counts(dueHistogram));
+        }
+        return result;
+    }
+    
+    private String bucket(LocalDate date) {
+        if ("month".equals(histogramBucket)) {
+            return date.withDayOfMonth(1).toString().substring(0, 7);
+        }
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toString();
+    }
+    
+    private String name(WorkPackage.Link link, String fallback) {
+        if (link == null || link.getHref() == null) {
+            return fallback;
+        }
+        String name = linkName.apply(link);
+        return name != null ? name : link.getHref();
+    }
+    
+    private static void increment(Map<String, int[]> counters, String key) {
+        counters.computeIfAbsent(key, k -> new int[1])[0]++;
+    }
+    
+    /**
+     * Counter values in map order; hash maps are sorted by count, highest first
+     */
+    private static Map<String, Integer> counts(Map<String, int[]> counters) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        if (counters instanceof TreeMap) {
+            counters.forEach((key, count) -> result.put(key, count[0]));
+        } else {
+            counters.entrySet().stream()
+                    .sorted((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]))
+                    .forEach(e -> result.put(e.getKey(), e.getValue()[0]));
+        }
+        return result;
+    }
+    
+    private static LocalDate parseDate(String date) {
+        if (date == null || date.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
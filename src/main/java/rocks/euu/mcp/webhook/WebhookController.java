@@ -0,0 +1,74 @@
+package rocks.euu.mcp.webhook;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import rocks.euu.mcp.config.OpenProjectProperties;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Receives OpenProject webhooks, so cached data is updated when it changes
+ * instead of being polled.
+ * 
+ * OpenProject signs the body with the webhook secret and sends
+ * {@code X-OP-Signature: sha1=<hex HMAC-SHA1>}.
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+public class WebhookController {
+    
+    public static final String PATH = "/webhooks/openproject";
+    public static final String SIGNATURE_HEADER = "X-OP-Signature";
+    
+    private final WebhookHandler handler;
+    private final OpenProjectProperties properties;
+    
+    @PostMapping(PATH)
+    public ResponseEntity<Void> receive(
+            @RequestHeader(value = SIGNATURE_HEADER, required = false) String signature,
+            @RequestBody byte[] body) {
+        
+        if (!hasValidSignature(signature, body)) {
+            log.warn("Rejected webhook with missing or invalid signature");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            handler.handle(body);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected malformed webhook: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    private boolean hasValidSignature(String signature, byte[] body) {
+        String secret = properties.getWebhookSecret();
+        if (secret == null || secret.isBlank() || signature == null) {
+            return false;
+        }
+        byte[] expected = ("sha1=" + sign(secret, body)).getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(expected, signature.trim().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    static String sign(String secret, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA1 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package rocks.euu.mcp.webhook;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import rocks.euu.mcp.cache.ProjectTree;
+import rocks.euu.mcp.cache.WorkPackageCache;
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.model.Project;
+import rocks.euu.mcp.model.WorkPackage;
+import rocks.euu.mcp.resources.OpenProjectResources;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Applies a verified webhook payload to the caches: project changes update the project
+ * tree and the remembered projects in place, work package changes update the work package
+ * cache and drop the remembered work package lists they affect. The changed MCP resources
+ * are announced afterwards. Only in-memory work is done, so it can run on the request thread.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebhookHandler {
+    
+    private final OpenProjectClient client;
+    private final ProjectTree projectTree;
+    private final WorkPackageCache workPackageCache;
+    private final OpenProjectResources resources;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    /**
+     * Apply one webhook payload, e.g. {"action": "work_package:updated", "work_package": {...}}
+     *
+     * @return the action of the payload
+     */
+    public String handle(byte[] body) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getMessage(), e);
+        }
+        if (root == null || !root.hasNonNull("action")) {
+            throw new IllegalArgumentException("Missing action");
+        }
+        String action = root.path("action").asText();
+        
+        try {
+            if (action.startsWith("project:") && root.hasNonNull("project")) {
+                Project project = objectMapper.treeToValue(root.path("project"), Project.class);
+                log.info("Webhook {}: project {} ({})", action, project.getId(), project.getIdentifier());
+                projectTree.put(project);
+                client.rememberProject(project);
+                resources.projectChanged(project);
+            } else if (action.startsWith("work_package:") && root.hasNonNull("work_package")) {
+                WorkPackage workPackage = objectMapper.treeToValue(root.path("work_package"), WorkPackage.class);
+                log.info("Webhook {}: work package {}", action, workPackage.getId());
+                // Includes the previous project of a work package that moved, if it was loaded
+                Set<Integer> affected = workPackageCache.put(workPackage);
+                client.forgetWorkPackage(workPackage.getId(), projectKeys(affected));
+                affected.forEach(resources::workPackagesChanged);
+            } else {
+                log.debug("Ignoring webhook {}", action);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid " + action + " payload: " + e.getMessage(), e);
+        }
+        return action;
+    }
+    
+    /**
+     * The IDs and identifiers of the projects, as tools may use either
+     */
+    private Set<String> projectKeys(Set<Integer> projectIds) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Integer projectId : projectIds) {
+            keys.add(projectId.toString());
+            projectTree.findLoaded(projectId).ifPresent(project -> keys.add(project.getIdentifier()));
+        }
+        return keys;
+    }
+}
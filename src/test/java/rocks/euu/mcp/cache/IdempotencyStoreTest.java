@@ -0,0 +1,159 @@
+package rocks.euu.mcp.cache;
+
+import rocks.euu.mcp.config.OpenProjectProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("IdempotencyStore Unit Tests")
+class IdempotencyStoreTest {
+    
+    @Test
+    @DisplayName("concurrent calls with the same key should wait for the first call")
+    void testConcurrentDuplicateWaits() throws Exception {
+        // Given
+        IdempotencyStore store = new IdempotencyStore(new OpenProjectProperties());
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> store.execute("k", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "created-1";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        
+        // When
+        CompletableFuture<String> duplicate = CompletableFuture.supplyAsync(() -> store.execute("k", () -> {
+            calls.incrementAndGet();
+            return "created-2";
+        }));
+        release.countDown();
+        
+        // Then
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("created-1");
+        assertThat(duplicate.get(5, TimeUnit.SECONDS)).isEqualTo("created-1");
+        assertThat(calls).hasValue(1);
+    }
+    
+    @Test
+    @DisplayName("failed calls should be forgotten so they can be retried")
+    void testFailureIsNotRemembered() {
+        // Given
+        IdempotencyStore store = new IdempotencyStore(new OpenProjectProperties());
+        
+        // When / Then
+        assertThatThrownBy(() -> store.execute("k", () -> {
+            throw new RuntimeException("upstream down");
+        })).hasMessage("upstream down");
+        assertThat(store.execute("k", () -> "created")).isEqualTo("created");
+    }
+    
+    @Test
+    @DisplayName("expired and evicted keys should run the action again")
+    void testExpiryAndBound() {
+        // Given
+        OpenProjectProperties properties = new OpenProjectProperties();
+        properties.setIdempotencyTtl(Duration.ZERO);
+        IdempotencyStore expiring = new IdempotencyStore(properties);
+        
+        OpenProjectProperties small = new OpenProjectProperties();
+        small.setIdempotencyMaxEntries(1);
+        IdempotencyStore bounded = new IdempotencyStore(small);
+        
+        // When
+        expiring.execute("k", () -> "first");
+        bounded.execute("a", () -> "a-1");
+        bounded.execute("b", () -> "b-1");
+        
+        // Then
+        assertThat(expiring.execute("k", () -> "second")).isEqualTo("second");
+        assertThat(bounded.execute("b", () -> "b-2")).isEqualTo("b-1");
+        assertThat(bounded.execute("a", () -> "a-2")).isEqualTo("a-2");
+    }
+    
+    @Test
+    @DisplayName("a running call should not be evicted by newer entries")
+    void testRunningCallIsNotEvicted() throws Exception {
+        // Given
+        OpenProjectProperties small = new OpenProjectProperties();
+        small.setIdempotencyMaxEntries(1);
+        IdempotencyStore store = new IdempotencyStore(small);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> store.execute("a", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "a-1";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        
+        // When
+        store.execute("b", () -> "b-1");
+        CompletableFuture<String> duplicate = CompletableFuture.supplyAsync(() -> store.execute("a", () -> {
+            calls.incrementAndGet();
+            return "a-2";
+        }));
+        release.countDown();
+        
+        // Then
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("a-1");
+        assertThat(duplicate.get(5, TimeUnit.SECONDS)).isEqualTo("a-1");
+        assertThat(calls).hasValue(1);
+    }
+    
+    @Test
+    @DisplayName("an error in the first call should fail the waiting duplicates instead of hanging them")
+    void testErrorReleasesWaiters() throws Exception {
+        // Given
+        IdempotencyStore store = new IdempotencyStore(new OpenProjectProperties());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> store.execute("k", () -> {
+            started.countDown();
+            await(release);
+            throw new AssertionError("broken");
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        
+        // When: the duplicate is waiting for the first call when it fails
+        CompletableFuture<String> duplicate = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                duplicate.complete(store.execute("k", () -> "created"));
+            } catch (Throwable e) {
+                duplicate.completeExceptionally(e);
+            }
+        });
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        
+        // Then
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AssertionError.class);
+        assertThatThrownBy(() -> duplicate.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AssertionError.class);
+        assertThat(store.execute("k", () -> "created")).isEqualTo("created");
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
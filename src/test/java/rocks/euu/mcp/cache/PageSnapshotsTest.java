@@ -0,0 +1,54 @@
+package rocks.euu.mcp.cache;
+
+import rocks.euu.mcp.config.OpenProjectProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PageSnapshots Unit Tests")
+class PageSnapshotsTest {
+    
+    private static final PageSnapshots.Snapshot SNAPSHOT =
+            new PageSnapshots.Snapshot("projects", List.of("{\"id\":1}", "{\"id\":2}"), Map.of());
+    
+    @Test
+    @DisplayName("snapshots should be served until they expire")
+    void testExpiry() throws Exception {
+        // Given
+        OpenProjectProperties properties = new OpenProjectProperties();
+        properties.setPageSnapshotTtl(Duration.ofMillis(200));
+        PageSnapshots snapshots = new PageSnapshots(properties);
+        
+        // When
+        String id = snapshots.put(SNAPSHOT);
+        
+        // Then
+        assertThat(snapshots.get(id)).contains(SNAPSHOT);
+        Thread.sleep(300);
+        assertThat(snapshots.get(id)).isEmpty();
+    }
+    
+    @Test
+    @DisplayName("the oldest snapshots should be dropped beyond the maximum number of entries")
+    void testMaxEntries() {
+        // Given
+        OpenProjectProperties properties = new OpenProjectProperties();
+        properties.setPageSnapshotMaxEntries(2);
+        PageSnapshots snapshots = new PageSnapshots(properties);
+        
+        // When
+        String first = snapshots.put(SNAPSHOT);
+        String second = snapshots.put(SNAPSHOT);
+        String third = snapshots.put(SNAPSHOT);
+        
+        // Then
+        assertThat(snapshots.get(first)).isEmpty();
+        assertThat(snapshots.get(second)).isPresent();
+        assertThat(snapshots.get(third)).isPresent();
+    }
+}
@@ -0,0 +1,118 @@
+package rocks.euu.mcp.cache;
+
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.model.Project;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProjectTree Unit Tests")
+class ProjectTreeTest {
+    
+    @Mock
+    private OpenProjectClient mockClient;
+    
+    private ProjectTree tree;
+    
+    @BeforeEach
+    void setUp() {
+        when(mockClient.listAllProjects()).thenReturn(List.of(
+                project(1, "marketing", null),
+                project(2, "campaigns", 1),
+                project(3, "events", 1),
+                project(4, "engineering", null)));
+        tree = new ProjectTree(mockClient);
+    }
+    
+    @Test
+    @DisplayName("subtree should contain all descendants and only them")
+    void testSubtree() {
+        // When
+        ProjectTree.Node marketing = tree.subtree("marketing");
+        
+        // Then
+        assertThat(marketing.children()).extracting(ProjectTree.Node::identifier)
+                .containsExactly("campaigns", "events");
+        assertThat(tree.subtree("1")).isSameAs(marketing);
+        assertThat(tree.forest()).extracting(ProjectTree.Node::identifier)
+                .containsExactly("marketing", "engineering");
+        verify(mockClient, times(1)).listAllProjects();
+    }
+    
+    @Test
+    @DisplayName("put should move a project and refresh only the affected subtrees")
+    void testPutMovesProject() {
+        // Given
+        ProjectTree.Node engineering = tree.subtree("engineering");
+        tree.subtree("marketing");
+        
+        // When
+        tree.put(project(3, "events", 4));
+        
+        // Then
+        assertThat(tree.subtree("marketing").children()).extracting(ProjectTree.Node::identifier)
+                .containsExactly("campaigns");
+        assertThat(tree.subtree("engineering")).isNotSameAs(engineering);
+        assertThat(tree.subtree("engineering").children()).extracting(ProjectTree.Node::identifier)
+                .containsExactly("events");
+    }
+    
+    @Test
+    @DisplayName("remove should make sub-projects top-level")
+    void testRemove() {
+        // When
+        tree.projects();
+        tree.remove(1);
+        
+        // Then
+        assertThat(tree.forest()).extracting(ProjectTree.Node::identifier)
+                .containsExactly("campaigns", "events", "engineering");
+        assertThatThrownBy(() -> tree.subtree("marketing")).isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    @Test
+    @DisplayName("the scheduled refresh should pick up new projects and keep the tree on failure")
+    void testRefreshIfLoaded() {
+        // Given
+        tree.projects();
+        when(mockClient.listAllProjects())
+                .thenReturn(List.of(project(1, "marketing", null), project(5, "sales", null)))
+                .thenThrow(new RuntimeException("OpenProject down"));
+        
+        // When
+        tree.refreshIfLoaded();
+        tree.refreshIfLoaded();
+        
+        // Then
+        assertThat(tree.forest()).extracting(ProjectTree.Node::identifier)
+                .containsExactly("marketing", "sales");
+        verify(mockClient, times(3)).listAllProjects();
+    }
+    
+    private static Project project(int id, String identifier, Integer parentId) {
+        Project project = new Project();
+        project.setId(id);
+        project.setIdentifier(identifier);
+        project.setName(identifier);
+        if (parentId != null) {
+            Project.Link parent = new Project.Link();
+            parent.setHref("/api/v3/projects/" + parentId);
+            Project.Links links = new Project.Links();
+            links.setParent(parent);
+            project.setLinks(links);
+        }
+        return project;
+    }
+}
@@ -0,0 +1,118 @@
+package rocks.euu.mcp.cache;
+
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.config.OpenProjectProperties;
+import rocks.euu.mcp.model.WorkPackage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WorkPackageCache Unit Tests")
+class WorkPackageCacheTest {
+    
+    @Mock
+    private OpenProjectClient mockClient;
+    
+    private WorkPackageCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        cache = new WorkPackageCache(mockClient, new OpenProjectProperties());
+    }
+    
+    @Test
+    @DisplayName("workPackages should scan a project once and then serve it from memory")
+    void testLoadsOnce() {
+        // Given
+        when(mockClient.streamWorkPackages(eq("5"), any()))
+                .thenReturn(Flux.just(workPackage(1, 5, "Design"), workPackage(2, 5, "Build")));
+        
+        // When
+        cache.workPackages(5);
+        
+        // Then
+        assertThat(cache.workPackages(5)).extracting(WorkPackage::getSubject).containsExactly("Design", "Build");
+        assertThat(cache.isLoaded(5)).isTrue();
+        verify(mockClient, times(1)).streamWorkPackages(eq("5"), any());
+    }
+    
+    @Test
+    @DisplayName("put should update loaded projects in place and move work packages between them")
+    void testPutMovesWorkPackage() {
+        // Given
+        when(mockClient.streamWorkPackages(eq("5"), any()))
+                .thenReturn(Flux.just(workPackage(1, 5, "Design"), workPackage(2, 5, "Build")));
+        when(mockClient.streamWorkPackages(eq("6"), any())).thenReturn(Flux.just(workPackage(3, 6, "Test")));
+        cache.workPackages(5);
+        cache.workPackages(6);
+        
+        // When
+        var affected = cache.put(workPackage(2, 6, "Build (moved)"));
+        
+        // Then
+        assertThat(affected).containsExactly(5, 6);
+        assertThat(cache.workPackages(5)).extracting(WorkPackage::getId).containsExactly(1);
+        assertThat(cache.workPackages(6)).extracting(WorkPackage::getSubject).containsExactly("Build (moved)", "Test");
+    }
+    
+    @Test
+    @DisplayName("a scan that overlapped with a change should not be kept")
+    void testChangeDuringScan() {
+        // Given
+        when(mockClient.streamWorkPackages(eq("5"), any())).thenReturn(Flux.defer(() -> {
+            cache.put(workPackage(1, 5, "Design (changed)"));
+            return Flux.just(workPackage(1, 5, "Design"));
+        }));
+        
+        // When
+        cache.workPackages(5);
+        
+        // Then
+        assertThat(cache.isLoaded(5)).isFalse();
+    }
+    
+    @Test
+    @DisplayName("a project should be scanned again once its entry has expired")
+    void testExpiry() {
+        // Given
+        OpenProjectProperties properties = new OpenProjectProperties();
+        properties.setWorkPackageCacheTtl(Duration.ZERO);
+        cache = new WorkPackageCache(mockClient, properties);
+        when(mockClient.streamWorkPackages(eq("5"), any()))
+                .thenReturn(Flux.just(workPackage(1, 5, "Design")))
+                .thenReturn(Flux.just(workPackage(1, 5, "Design"), workPackage(2, 5, "Created in the UI")));
+        
+        // When
+        cache.workPackages(5);
+        
+        // Then
+        assertThat(cache.workPackages(5)).extracting(WorkPackage::getId).containsExactly(1, 2);
+        verify(mockClient, times(2)).streamWorkPackages(eq("5"), any());
+    }
+    
+    private static WorkPackage workPackage(int id, int projectId, String subject) {
+        WorkPackage.Link project = new WorkPackage.Link();
+        project.setHref("/api/v3/projects/" + projectId);
+        WorkPackage.Links links = new WorkPackage.Links();
+        links.setProject(project);
+        WorkPackage workPackage = new WorkPackage();
+        workPackage.setId(id);
+        workPackage.setSubject(subject);
+        workPackage.setLinks(links);
+        return workPackage;
+    }
+}
@@ -0,0 +1,115 @@
+package rocks.euu.mcp.client;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CircuitBreaker Unit Tests")
+class CircuitBreakerTest {
+    
+    private Instant now = Instant.parse("2026-01-05T10:00:00Z");
+    
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+        
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+        
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    };
+    
+    @Test
+    @DisplayName("circuit should open once the failure rate reaches the threshold")
+    void testOpensAtThreshold() {
+        // Given
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 50, Duration.ofSeconds(30), clock);
+        
+        // When
+        call(breaker, true);
+        call(breaker, false);
+        call(breaker, false);
+        
+        // Then: 2 of 3 failed, but fewer calls than the minimum
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        
+        call(breaker, true);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        
+        call(breaker, false);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.retryAfter()).isEqualTo(Duration.ofSeconds(30));
+    }
+    
+    @Test
+    @DisplayName("half-open circuit should let one probe through and close on its success")
+    void testHalfOpenProbe() {
+        // Given
+        CircuitBreaker breaker = new CircuitBreaker(4, 2, 50, Duration.ofSeconds(30), clock);
+        call(breaker, false);
+        call(breaker, false);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        
+        // When
+        now = now.plusSeconds(31);
+        
+        // Then
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        
+        now = now.plusSeconds(31);
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+    
+    @Test
+    @DisplayName("old outcomes should leave the window")
+    void testSlidingWindow() {
+        // Given
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 50, Duration.ofSeconds(30), clock);
+        call(breaker, true);
+        call(breaker, true);
+        call(breaker, true);
+        call(breaker, true);
+        
+        // When
+        call(breaker, false);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        call(breaker, false);
+        
+        // Then: 2 failures in the last 4 calls, although only 2 of 6 calls failed overall
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+    
+    /**
+     * One permitted call, {@code success} true for a successful call
+     */
+    private static void call(CircuitBreaker breaker, boolean success) {
+        assertThat(breaker.tryAcquire()).isTrue();
+        if (success) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure();
+        }
+    }
+}
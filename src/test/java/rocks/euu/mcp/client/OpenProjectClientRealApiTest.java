@@ -1,5 +1,7 @@
 package rocks.euu.mcp.client;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import rocks.euu.mcp.config.OpenProjectProperties;
 import rocks.euu.mcp.model.Project;
 import rocks.euu.mcp.model.WorkPackage;
 import org.junit.jupiter.api.*;
@@ -58,7 +60,9 @@ class OpenProjectClientRealApiTest {
                 .defaultHeader("Content-Type", "application/json")
                 .build();
         
-        client = new OpenProjectClient(webClient);
+        OpenProjectProperties properties = new OpenProjectProperties();
+        client = new OpenProjectClient(webClient, new CircuitBreakers(properties),
+                new UpstreamAdmission(properties, new SimpleMeterRegistry()));
         
         System.out.println("Running tests against: " + baseUrl);
         System.out.println("Test project: " + testProjectId);
@@ -2,17 +2,26 @@ package rocks.euu.mcp.client;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.client.WireMock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import rocks.euu.mcp.config.OpenProjectProperties;
 import rocks.euu.mcp.model.Project;
 import rocks.euu.mcp.model.Relation;
+import rocks.euu.mcp.model.Status;
 import rocks.euu.mcp.model.WorkPackage;
 import org.junit.jupiter.api.*;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Hooks;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Integration tests for OpenProjectClient using WireMock to simulate the OpenProject API.
@@ -50,7 +59,9 @@ class OpenProjectClientTest {
                 .defaultHeader("Content-Type", "application/json")
                 .build();
         
-        client = new OpenProjectClient(webClient);
+        OpenProjectProperties properties = new OpenProjectProperties();
+        client = new OpenProjectClient(webClient, new CircuitBreakers(properties),
+                new UpstreamAdmission(properties, new SimpleMeterRegistry()));
     }
     
     @Test
@@ -130,6 +141,125 @@ class OpenProjectClientTest {
         assertThat(workPackages.get(1).getId()).isEqualTo(102);
     }
     
+    @Test
+    @DisplayName("listWorkPackages should send filters and sort order as encoded JSON query parameters")
+    void testListWorkPackagesWithQuery() {
+        // Given
+        stubFor(get(urlPathEqualTo("/api/v3/projects/my-project/work_packages"))
+                .withQueryParam("filters", equalToJson("""
+                    [
+                        { "status": { "operator": "o", "values": [] } },
+                        { "dueDate": { "operator": "<>d", "values": ["2025-02-01", ""] } },
+                        { "subject": { "operator": "~", "values": ["Review \\"final\\" & sign-off"] } }
+                    ]
+                    """))
+                .withQueryParam("sortBy", equalToJson("[[\"dueDate\",\"asc\"]]"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("""
+                            {
+                                "_embedded": {
+                                    "elements": [
+                                        { "id": 103, "subject": "Review \\"final\\" & sign-off", "dueDate": "2025-02-03" }
+                                    ]
+                                }
+                            }
+                            """)));
+        
+        WorkPackageQuery query = new WorkPackageQuery();
+        query.setStatusState("open");
+        query.setDueDateFrom("2025-02-01");
+        query.setSubjectContains("Review \"final\" & sign-off");
+        query.sortBy("dueDate", "asc");
+        
+        // When
+        List<WorkPackage> workPackages = client.listWorkPackages("my-project", query);
+        
+        // Then
+        assertThat(workPackages).hasSize(1);
+        assertThat(workPackages.get(0).getId()).isEqualTo(103);
+    }
+    
+    @Test
+    @DisplayName("streamWorkPackages should read all pages one after another")
+    void testStreamWorkPackages() {
+        // Given
+        StringBuilder firstPage = new StringBuilder();
+        for (int i = 1; i <= 100; i++) {
+            firstPage.append(i > 1 ? "," : "").append("{\"id\":").append(i).append("}");
+        }
+        stubFor(get(urlPathEqualTo("/api/v3/projects/my-project/work_packages"))
+                .withQueryParam("offset", equalTo("1"))
+                .willReturn(okJson("{\"total\":101,\"_embedded\":{\"elements\":[" + firstPage + "]}}")));
+        stubFor(get(urlPathEqualTo("/api/v3/projects/my-project/work_packages"))
+                .withQueryParam("offset", equalTo("2"))
+                .willReturn(okJson("{\"total\":101,\"_embedded\":{\"elements\":[{\"id\":101}]}}")));
+        
+        // When
+        List<WorkPackage> workPackages = client.streamWorkPackages("my-project", WorkPackageQuery.none())
+                .collectList()
+                .block();
+        
+        // Then
+        assertThat(workPackages).hasSize(101);
+        assertThat(workPackages.get(100).getId()).isEqualTo(101);
+        verify(2, getRequestedFor(urlPathEqualTo("/api/v3/projects/my-project/work_packages")));
+    }
+    
+    @Test
+    @DisplayName("listWorkPackagesOrLastKnown and listProjectsOrLastKnown should read every page")
+    void testOrLastKnownReadsAllPages() {
+        // Given
+        stubFor(get(urlPathEqualTo("/api/v3/projects/my-project/work_packages"))
+                .withQueryParam("offset", equalTo("1"))
+                .willReturn(okJson("{\"total\":101,\"_embedded\":{\"elements\":[" + elements(1, 100) + "]}}")));
+        stubFor(get(urlPathEqualTo("/api/v3/projects/my-project/work_packages"))
+                .withQueryParam("offset", equalTo("2"))
+                .willReturn(okJson("{\"total\":101,\"_embedded\":{\"elements\":[" + elements(101, 101) + "]}}")));
+        stubFor(get(urlPathEqualTo("/api/v3/projects"))
+                .withQueryParam("offset", equalTo("1"))
+                .willReturn(okJson("{\"total\":102,\"_embedded\":{\"elements\":[" + elements(1, 100) + "]}}")));
+        stubFor(get(urlPathEqualTo("/api/v3/projects"))
+                .withQueryParam("offset", equalTo("2"))
+                .willReturn(okJson("{\"total\":102,\"_embedded\":{\"elements\":[" + elements(101, 102) + "]}}")));
+        
+        // When
+        List<WorkPackage> workPackages = client.listWorkPackagesOrLastKnown("my-project", WorkPackageQuery.none()).value();
+        List<Project> projects = client.listProjectsOrLastKnown().value();
+        
+        // Then
+        assertThat(workPackages).hasSize(101);
+        assertThat(workPackages.get(100).getId()).isEqualTo(101);
+        assertThat(projects).hasSize(102);
+        assertThat(projects.get(101).getId()).isEqualTo(102);
+    }
+    
+    @Test
+    @DisplayName("countWorkPackagesGroupedBy should read group counts")
+    void testCountWorkPackagesGroupedBy() {
+        // Given
+        stubFor(get(urlPathEqualTo("/api/v3/projects/my-project/work_packages"))
+                .withQueryParam("groupBy", equalTo("status"))
+                .willReturn(okJson("""
+                    {
+                        "total": 5,
+                        "groups": [
+                            { "value": "New", "count": 3 },
+                            { "value": "Closed", "count": 2 }
+                        ],
+                        "_embedded": { "elements": [] }
+                    }
+                    """)));
+        
+        // When
+        Optional<Map<String, Integer>> counts = client.countWorkPackagesGroupedBy(
+                "my-project", WorkPackageQuery.none(), "status");
+        
+        // Then
+        assertThat(counts).hasValue(Map.of("New", 3, "Closed", 2));
+    }
+    
     @Test
     @DisplayName("createWorkPackage should create a new work package and return it")
     void testCreateWorkPackage() {
@@ -166,8 +296,9 @@ class OpenProjectClientTest {
         
         // Verify the request was made with correct body
         verify(postRequestedFor(urlEqualTo("/api/v3/projects/my-project/work_packages"))
-                .withRequestBody(containing("\"subject\": \"New Task\""))
-                .withRequestBody(containing("\"startDate\": \"2025-02-15\"")));
+                .withRequestBody(matchingJsonPath("$.subject", equalTo("New Task")))
+                .withRequestBody(matchingJsonPath("$.startDate", equalTo("2025-02-15")))
+                .withRequestBody(matchingJsonPath("$._links.type.href", equalTo("/api/v3/types/1"))));
     }
     
     @Test
@@ -198,9 +329,168 @@ class OpenProjectClientTest {
         
         // Verify the request
         verify(postRequestedFor(urlEqualTo("/api/v3/work_packages/102/relations"))
-                .withRequestBody(containing("\"type\": \"follows\""))
-                .withRequestBody(containing("/api/v3/work_packages/102"))
-                .withRequestBody(containing("/api/v3/work_packages/101")));
+                .withRequestBody(equalToJson("""
+                    {
+                        "type": "follows",
+                        "_links": {
+                            "from": { "href": "/api/v3/work_packages/102" },
+                            "to": { "href": "/api/v3/work_packages/101" }
+                        }
+                    }
+                    """)));
+    }
+    
+    @Test
+    @DisplayName("createProject should escape quotes and control characters in the request body")
+    void testCreateProjectEscapesControlCharacters() {
+        // Given
+        stubFor(post(urlEqualTo("/api/v3/projects"))
+                .willReturn(aResponse()
+                        .withStatus(201)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("""
+                            { "id": 7, "identifier": "quoted", "name": "Quoted" }
+                            """)));
+        String description = "Line \"one\"\nTab\there\u0001 back\\slash";
+        
+        // When
+        Project project = client.createProject("Quoted", "quoted", description, "3");
+        
+        // Then
+        assertThat(project.getId()).isEqualTo(7);
+        verify(postRequestedFor(urlEqualTo("/api/v3/projects"))
+                .withRequestBody(matchingJsonPath("$.description.raw", equalTo(description)))
+                .withRequestBody(matchingJsonPath("$._links.parent.href", equalTo("/api/v3/projects/3"))));
+    }
+    
+    @Test
+    @DisplayName("streamRelations should query the relations involving the given work packages")
+    void testStreamRelations() {
+        // Given
+        stubFor(get(urlPathEqualTo("/api/v3/relations"))
+                .withQueryParam("filters", equalToJson("""
+                    [{"involved":{"operator":"=","values":["11","12"]}}]
+                    """))
+                .withQueryParam("offset", equalTo("1"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("""
+                            {
+                                "total": 1,
+                                "count": 1,
+                                "_embedded": {
+                                    "elements": [
+                                        {
+                                            "id": 7,
+                                            "type": "follows",
+                                            "_links": {
+                                                "from": { "href": "/api/v3/work_packages/12" },
+                                                "to": { "href": "/api/v3/work_packages/11" }
+                                            }
+                                        }
+                                    ]
+                                }
+                            }
+                            """)));
+        
+        // When
+        List<Relation> relations = client.streamRelations(List.of(11, 12)).collectList().block();
+        
+        // Then
+        assertThat(relations).extracting(Relation::getType).containsExactly("follows");
+    }
+    
+    @Test
+    @DisplayName("listStatuses should return statuses with their closed flag")
+    void testListStatuses() {
+        // Given
+        stubFor(get(urlPathEqualTo("/api/v3/statuses"))
+                .withQueryParam("offset", equalTo("1"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("""
+                            {
+                                "total": 2,
+                                "count": 2,
+                                "_embedded": {
+                                    "elements": [
+                                        { "id": 1, "name": "New", "isDefault": true, "isClosed": false },
+                                        { "id": 12, "name": "Closed", "isClosed": true }
+                                    ]
+                                }
+                            }
+                            """)));
+        
+        // When
+        List<Status> statuses = client.listStatuses();
+        
+        // Then
+        assertThat(statuses).hasSize(2);
+        assertThat(statuses.get(0).getName()).isEqualTo("New");
+        assertThat(statuses.get(1).getIsClosed()).isTrue();
+    }
+    
+    @Test
+    @DisplayName("listProjectsOrLastKnown should fail fast and serve stale projects while the circuit is open")
+    void testCircuitOpenServesLastKnown() {
+        // Given
+        OpenProjectProperties properties = new OpenProjectProperties();
+        properties.setCircuitWindowSize(2);
+        properties.setCircuitMinimumCalls(2);
+        properties.setCircuitFailureRateThreshold(100);
+        client = new OpenProjectClient(WebClient.builder().baseUrl("http://localhost:8089/api/v3").build(),
+                new CircuitBreakers(properties), new UpstreamAdmission(properties, new SimpleMeterRegistry()));
+        stubFor(get(urlPathEqualTo("/api/v3/projects"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("""
+                            { "_embedded": { "elements": [ { "id": 1, "identifier": "cached", "name": "Cached" } ] } }
+                            """)));
+        assertThat(client.listProjectsOrLastKnown().stale()).isFalse();
+        
+        stubFor(get(urlPathEqualTo("/api/v3/projects"))
+                .willReturn(aResponse().withStatus(503)));
+        assertThatThrownBy(() -> client.listAllProjects()).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> client.listAllProjects()).isInstanceOf(RuntimeException.class);
+        
+        // When
+        LastKnown<List<Project>> projects = client.listProjectsOrLastKnown();
+        
+        // Then
+        assertThat(projects.stale()).isTrue();
+        assertThat(projects.value()).extracting(Project::getIdentifier).containsExactly("cached");
+        assertThatThrownBy(() -> client.listAllProjects()).isInstanceOf(CircuitOpenException.class);
+        verify(3, getRequestedFor(urlPathEqualTo("/api/v3/projects")));
+    }
+    
+    @Test
+    @DisplayName("getWorkPackages should query the IDs with an id filter in chunks")
+    void testGetWorkPackagesInChunks() {
+        // Given
+        stubFor(get(urlPathEqualTo("/api/v3/work_packages"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/hal+json")
+                        .withBody("""
+                            { "total": 1, "_embedded": { "elements": [ { "id": 7, "subject": "Found" } ] } }
+                            """)));
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1; id <= OpenProjectClient.ID_CHUNK_SIZE + 20; id++) {
+            ids.add(id);
+        }
+        
+        // When
+        List<WorkPackage> workPackages = client.getWorkPackages(ids, 2).collectList().block();
+        
+        // Then
+        assertThat(workPackages).hasSize(2).extracting(WorkPackage::getSubject).containsOnly("Found");
+        verify(2, getRequestedFor(urlPathEqualTo("/api/v3/work_packages")));
+        verify(getRequestedFor(urlPathEqualTo("/api/v3/work_packages"))
+                .withQueryParam("filters", containing("\"id\":{\"operator\":\"=\",\"values\":[\"101\""))
+                .withQueryParam("pageSize", equalTo("20")));
     }
     
     @Test
@@ -217,4 +507,61 @@ class OpenProjectClientTest {
         // Then
         verify(deleteRequestedFor(urlEqualTo("/api/v3/work_packages/201")));
     }
+    
+    @Test
+    @DisplayName("updateWorkPackageAsync should send the lock version and only the changed fields")
+    void testUpdateWorkPackage() {
+        // Given
+        stubFor(patch(urlEqualTo("/api/v3/work_packages/201"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/hal+json")
+                        .withBody("{\"id\": 201, \"lockVersion\": 4, \"subject\": \"Renamed\"}")));
+        
+        // When
+        WorkPackage wp = client.updateWorkPackageAsync(201, 3, "Renamed", null, "2025-03-01", null, null).block();
+        
+        // Then
+        assertThat(wp.getLockVersion()).isEqualTo(4);
+        verify(patchRequestedFor(urlEqualTo("/api/v3/work_packages/201"))
+                .withRequestBody(equalToJson("""
+                        {"lockVersion": 3, "subject": "Renamed", "dueDate": "2025-03-01"}
+                        """)));
+    }
+    
+    @Test
+    @DisplayName("requests should be aborted when the tool call is past its deadline or cancelled")
+    void testCallScopeAbortsRequests() {
+        // Given: the scope reaches the exchanges through context propagation, as in the application
+        Hooks.enableAutomaticContextPropagation();
+        stubFor(get(urlEqualTo("/api/v3/projects"))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(5000).withBody("{}")));
+        CallScope expiring = new CallScope(Duration.ofMillis(300));
+        CallScope cancelled = new CallScope(Duration.ofMinutes(1));
+        cancelled.cancel("Tool call cancelled by the client");
+        
+        try {
+            // When / Then
+            long started = System.nanoTime();
+            assertThatThrownBy(() -> expiring.run(() -> client.listProjects()))
+                    .isInstanceOf(CallCancelledException.class)
+                    .hasMessageContaining("deadline");
+            assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(3));
+            
+            assertThatThrownBy(() -> cancelled.run(() -> client.listProjects()))
+                    .isInstanceOf(CallCancelledException.class)
+                    .hasMessage("Tool call cancelled by the client");
+            verify(1, getRequestedFor(urlEqualTo("/api/v3/projects")));
+        } finally {
+            Hooks.disableAutomaticContextPropagation();
+        }
+    }
+    
+    private static String elements(int firstId, int lastId) {
+        StringBuilder elements = new StringBuilder();
+        for (int id = firstId; id <= lastId; id++) {
+            elements.append(id > firstId ? "," : "").append("{\"id\":").append(id).append("}");
+        }
+        return elements.toString();
+    }
 }
@@ -0,0 +1,128 @@
+package rocks.euu.mcp.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import rocks.euu.mcp.config.OpenProjectProperties;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("UpstreamAdmission Unit Tests")
+class UpstreamAdmissionTest {
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> started = new ArrayList<>();
+    private final List<Sinks.One<ClientResponse>> responses = new ArrayList<>();
+    
+    @Test
+    @DisplayName("a session should not exceed its limit while other sessions are admitted")
+    void testSessionLimit() {
+        // Given
+        UpstreamAdmission admission = admission(8, 2);
+        
+        // When
+        List<String> bodies = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            send(admission, "a" + i, scope("A", false), bodies);
+        }
+        send(admission, "b0", scope("B", false), bodies);
+        
+        // Then
+        assertThat(started).containsExactly("a0", "a1", "b0");
+        assertThat(admission.queued()).isEqualTo(1);
+        
+        respond(0);
+        assertThat(bodies).containsExactly("a0");
+        assertThat(started).containsExactly("a0", "a1", "b0", "a2");
+        assertThat(admission.inFlight()).isEqualTo(3);
+    }
+    
+    @Test
+    @DisplayName("an interactive request should overtake queued bulk requests")
+    void testInteractiveOvertakesBulk() {
+        // Given: one request in flight and a bulk tool's requests queued behind it
+        UpstreamAdmission admission = admission(1, 4);
+        List<String> bodies = new ArrayList<>();
+        send(admission, "bulk0", scope("A", true), bodies);
+        for (int i = 1; i < 4; i++) {
+            send(admission, "bulk" + i, scope("A", true), bodies);
+        }
+        
+        // When
+        send(admission, "read", scope("B", false), bodies);
+        respond(0);
+        
+        // Then
+        assertThat(started).containsExactly("bulk0", "read");
+        respond(1);
+        assertThat(started).containsExactly("bulk0", "read", "bulk1");
+        assertThat(meterRegistry.get(UpstreamAdmission.QUEUE_WAIT_METRIC).tag("class", "bulk").timer().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get(UpstreamAdmission.QUEUE_WAIT_METRIC).tag("class", "interactive").timer().count())
+                .isEqualTo(1);
+    }
+    
+    @Test
+    @DisplayName("a request cancelled while queued should give up its place")
+    void testCancelWhileQueued() {
+        // Given
+        UpstreamAdmission admission = admission(1, 1);
+        List<String> bodies = new ArrayList<>();
+        send(admission, "first", scope("A", false), bodies);
+        Disposable queued = send(admission, "cancelled", scope("B", false), bodies);
+        send(admission, "next", scope("C", false), bodies);
+        
+        // When
+        queued.dispose();
+        respond(0);
+        
+        // Then
+        assertThat(started).containsExactly("first", "next");
+        assertThat(admission.queued()).isZero();
+        assertThat(admission.inFlight()).isEqualTo(1);
+    }
+    
+    private UpstreamAdmission admission(int limit, int sessionLimit) {
+        OpenProjectProperties properties = new OpenProjectProperties();
+        properties.setUpstreamConcurrency(limit);
+        properties.setSessionUpstreamConcurrency(sessionLimit);
+        return new UpstreamAdmission(properties, meterRegistry);
+    }
+    
+    private static CallScope scope(String sessionId, boolean bulk) {
+        return new CallScope(Duration.ofMinutes(1), sessionId, bulk);
+    }
+    
+    /**
+     * Send a request through the filter and read its body; the exchange only completes
+     * once {@link #respond} is called for it
+     */
+    private Disposable send(UpstreamAdmission admission, String name, CallScope scope, List<String> bodies) {
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/" + name)).build();
+        return admission.filter(request, r -> {
+                    started.add(name);
+                    Sinks.One<ClientResponse> response = Sinks.one();
+                    responses.add(response);
+                    return response.asMono();
+                })
+                .flatMap(response -> response.bodyToMono(String.class))
+                .contextWrite(context -> context.put(CallScope.KEY, scope))
+                .subscribe(bodies::add);
+    }
+    
+    private void respond(int index) {
+        String name = started.get(index);
+        responses.get(index).tryEmitValue(ClientResponse.create(HttpStatus.OK).body(name).build());
+    }
+}
@@ -0,0 +1,106 @@
+package rocks.euu.mcp.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import rocks.euu.mcp.client.CallScope;
+import rocks.euu.mcp.client.OpenProjectClient;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs a tool call through the real server: the scope created by McpCancellationFilter has to
+ * reach the tool handler's thread through Reactor context propagation, otherwise
+ * notifications/cancelled cannot abort it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.ai.mcp.server.protocol=STREAMABLE",
+        "spring.ai.mcp.server.streamable-http.mcp-endpoint=/mcp",
+        "spring.reactor.context-propagation=auto"
+})
+@DisplayName("McpCancellationFilter End-to-End Tests")
+class McpCancellationEndToEndTest {
+    
+    @LocalServerPort
+    private int port;
+    
+    @MockitoBean
+    private OpenProjectClient mockClient;
+    
+    private WebClient webClient;
+    private String sessionId;
+    
+    @BeforeEach
+    void setUp() {
+        webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + port + "/mcp")
+                .defaultHeader("Accept", "application/json, text/event-stream")
+                .build();
+        sessionId = webClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"jsonrpc":"2.0","id":1,"method":"initialize","params":{"protocolVersion":"2025-03-26",\
+                        "capabilities":{},"clientInfo":{"name":"test","version":"1"}}}""")
+                .exchangeToMono(response -> response.releaseBody()
+                        .thenReturn(response.headers().asHttpHeaders().getFirst("Mcp-Session-Id")))
+                .block(Duration.ofSeconds(5));
+        post("""
+                {"jsonrpc":"2.0","method":"notifications/initialized"}""").block(Duration.ofSeconds(5));
+    }
+    
+    @Test
+    @DisplayName("the tool handler should run in the filter's scope, so notifications/cancelled aborts it")
+    void testCancelReachesToolHandler() throws Exception {
+        // Given: listProjects blocks in OpenProject until its call scope is cancelled
+        AtomicReference<CallScope> scope = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(1);
+        when(mockClient.listProjectsOrLastKnown()).thenAnswer(invocation -> {
+            CallScope current = CallScope.current().orElseThrow();
+            scope.set(current);
+            started.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!current.isDone() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            throw current.exception();
+        });
+        CompletableFuture<String> call = post("""
+                {"jsonrpc":"2.0","id":7,"method":"tools/call","params":{"name":"listProjects","arguments":{}}}""")
+                .toFuture();
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        
+        // When
+        post("""
+                {"jsonrpc":"2.0","method":"notifications/cancelled","params":{"requestId":7,"reason":"user aborted"}}""")
+                .block(Duration.ofSeconds(5));
+        
+        // Then
+        String response = call.get(10, TimeUnit.SECONDS);
+        assertThat(scope.get().sessionId()).isEqualTo(sessionId);
+        assertThat(response).contains("\"isError\":true")
+                .contains("Tool call cancelled by the client: user aborted");
+    }
+    
+    private Mono<String> post(String body) {
+        return webClient.post()
+                .header("Mcp-Session-Id", sessionId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(String.class)
+                .defaultIfEmpty("");
+    }
+}
@@ -0,0 +1,135 @@
+package rocks.euu.mcp.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import rocks.euu.mcp.client.CallCancelledException;
+import rocks.euu.mcp.client.CallScope;
+import rocks.euu.mcp.client.CircuitBreakers;
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.client.UpstreamAdmission;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("McpCancellationFilter Unit Tests")
+class McpCancellationFilterTest {
+    
+    private static final String TOOL_CALL = """
+            {"jsonrpc":"2.0","id":7,"method":"tools/call","params":{"name":"createWorkPackage","arguments":{}}}""";
+    
+    private final AtomicInteger upstreamRequests = new AtomicInteger();
+    private final AtomicBoolean upstreamCancelled = new AtomicBoolean();
+    private final AtomicReference<String> receivedBody = new AtomicReference<>();
+    
+    private McpCancellationFilter filter;
+    private UpstreamAdmission admission;
+    private OpenProjectClient client;
+    
+    @BeforeEach
+    void setUp() {
+        OpenProjectProperties properties = new OpenProjectProperties();
+        filter = new McpCancellationFilter("/mcp", properties);
+        // OpenProject never answers, so the request runs until the call is cancelled
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://openproject/api/v3")
+                .exchangeFunction(request -> {
+                    upstreamRequests.incrementAndGet();
+                    return Mono.<ClientResponse>never().doOnCancel(() -> upstreamCancelled.set(true));
+                })
+                .build();
+        admission = new UpstreamAdmission(properties, new SimpleMeterRegistry());
+        client = new OpenProjectClient(webClient, new CircuitBreakers(properties), admission);
+    }
+    
+    @Test
+    @DisplayName("notifications/cancelled should abort the upstream request of the matching tool call")
+    void testCancelAbortsToolCall() {
+        // Given: a tool call of session s1 that reads the replayed body and calls OpenProject
+        WebFilterChain sdk = exchange -> DataBufferUtils.join(exchange.getRequest().getBody())
+                .doOnNext(buffer -> receivedBody.set(buffer.toString(StandardCharsets.UTF_8)))
+                .then(client.createWorkPackageAsync("demo", "Task", null, null, null, null))
+                .then();
+        
+        // When / Then
+        StepVerifier.create(filter.filter(post("s1", TOOL_CALL), sdk))
+                .then(() -> cancel("s2", 7, "other session"))
+                .expectNoEvent(Duration.ofMillis(200))
+                .then(() -> cancel("s1", 7, "user aborted"))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(CallCancelledException.class)
+                        .hasMessage("Tool call cancelled by the client: user aborted"))
+                .verify(Duration.ofSeconds(5));
+        assertThat(receivedBody.get()).isEqualTo(TOOL_CALL);
+        assertThat(upstreamRequests).hasValue(1);
+        assertThat(upstreamCancelled).isTrue();
+        assertThat(admission.inFlight()).isZero();
+    }
+    
+    @Test
+    @DisplayName("a dropped connection should cancel the tool call's scope")
+    void testDisconnectCancelsScope() {
+        // Given
+        AtomicReference<CallScope> scope = new AtomicReference<>();
+        WebFilterChain sdk = exchange -> Mono.deferContextual(context -> {
+            scope.set(context.get(CallScope.KEY));
+            return Mono.never();
+        });
+        Disposable call = filter.filter(post("s1", TOOL_CALL), sdk).subscribe();
+        
+        // When
+        call.dispose();
+        
+        // Then
+        assertThat(scope.get()).isNotNull();
+        assertThat(scope.get().isDone()).isTrue();
+        assertThat(scope.get().exception()).hasMessage("Client disconnected");
+    }
+    
+    @Test
+    @DisplayName("a body over the size limit should be rejected with 413 without reaching the SDK")
+    void testBodyTooLarge() {
+        // Given
+        OpenProjectProperties properties = new OpenProjectProperties();
+        properties.setMaxRequestBytes(TOOL_CALL.length() - 1);
+        McpCancellationFilter limited = new McpCancellationFilter("/mcp", properties);
+        AtomicBoolean reachedSdk = new AtomicBoolean();
+        MockServerWebExchange exchange = post("s1", TOOL_CALL);
+        
+        // When
+        limited.filter(exchange, e -> Mono.fromRunnable(() -> reachedSdk.set(true))).block();
+        
+        // Then
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        assertThat(reachedSdk).isFalse();
+    }
+    
+    private void cancel(String sessionId, int requestId, String reason) {
+        String notification = """
+                {"jsonrpc":"2.0","method":"notifications/cancelled","params":{"requestId":%d,"reason":"%s"}}"""
+                .formatted(requestId, reason);
+        filter.filter(post(sessionId, notification), exchange -> Mono.empty()).block();
+    }
+    
+    private static MockServerWebExchange post(String sessionId, String body) {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/mcp")
+                .header("Mcp-Session-Id", sessionId)
+                .body(body));
+    }
+}
@@ -0,0 +1,149 @@
+package rocks.euu.mcp.config;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import rocks.euu.mcp.cache.IdempotencyStore;
+import rocks.euu.mcp.cache.PageSnapshots;
+import rocks.euu.mcp.cache.ProjectTree;
+import rocks.euu.mcp.cache.ReferenceDataCache;
+import rocks.euu.mcp.client.CircuitBreakers;
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.client.UpstreamAdmission;
+import rocks.euu.mcp.resources.OpenProjectResources;
+import rocks.euu.mcp.tools.OpenProjectTools;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("TraceLogHandler Unit Tests")
+class TraceLogHandlerTest {
+    
+    private static final Pattern SPAN_LINE = Pattern.compile(
+            "trace=(\\p{XDigit}{32}) span=(\\p{XDigit}{16}) parent=(\\p{XDigit}{16}|-) name=(\\S+) .*");
+    
+    private final Logger traceLogger = (Logger) LoggerFactory.getLogger("rocks.euu.mcp.trace");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    
+    private ObservationRegistry registry;
+    
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        traceLogger.addAppender(appender);
+        registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new TraceLogHandler());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        traceLogger.detachAppender(appender);
+    }
+    
+    @Test
+    @DisplayName("a finished observation should be logged as one span line with tags and events")
+    void testSpanLine() {
+        // Given
+        Observation observation = Observation.createNotStarted("mcp.tool.call", registry)
+                .contextualName("tool listProjects")
+                .lowCardinalityKeyValue("mcp.tool", "listProjects")
+                .highCardinalityKeyValue("mcp.session", "s1")
+                .start();
+        
+        // When
+        observation.event(Observation.Event.of("tool.returned"));
+        observation.error(new IllegalStateException("boom"));
+        observation.stop();
+        
+        // Then
+        assertThat(spanLines()).singleElement().asString().matches(
+                "trace=\\p{XDigit}{32} span=\\p{XDigit}{16} parent=- name=mcp\\.tool\\.call "
+                        + "contextualName=\"tool listProjects\" duration=\\d+\\.\\dms "
+                        + "tags=\\{mcp\\.tool=listProjects, mcp\\.session=s1\\} "
+                        + "events=\\[tool\\.returned@\\d+\\.\\dms\\] error=\"boom\"");
+    }
+    
+    @Test
+    @DisplayName("a tool call should produce a tool span with the OpenProject HTTP exchange as its child")
+    void testToolSpanParentsHttpExchange() {
+        // Given: the observation reaches the WebClient through context propagation, as in the application
+        Hooks.enableAutomaticContextPropagation();
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://openproject/api/v3")
+                .observationRegistry(registry)
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body("""
+                                {"total": 1, "_embedded": {"elements": [
+                                    {"id": 1, "identifier": "demo", "name": "Demo"}
+                                ]}}""")
+                        .build()))
+                .build();
+        OpenProjectProperties properties = new OpenProjectProperties();
+        OpenProjectClient client = new OpenProjectClient(webClient, new CircuitBreakers(properties),
+                new UpstreamAdmission(properties, new SimpleMeterRegistry()));
+        OpenProjectTools tools = new OpenProjectTools(client, new ReferenceDataCache(client),
+                new IdempotencyStore(properties), new ProjectTree(client), new PageSnapshots(properties),
+                mock(OpenProjectResources.class), properties);
+        McpServerFeatures.SyncToolSpecification listProjects = new McpToolConfig()
+                .openProjectToolSpecifications(tools, registry, properties).stream()
+                .filter(specification -> specification.tool().name().equals("listProjects"))
+                .findFirst()
+                .orElseThrow();
+        McpSyncServerExchange exchange = mock(McpSyncServerExchange.class);
+        when(exchange.sessionId()).thenReturn("s1");
+        
+        McpSchema.CallToolResult result;
+        try {
+            // When
+            result = listProjects.callHandler().apply(exchange, new McpSchema.CallToolRequest("listProjects", Map.of()));
+        } finally {
+            Hooks.disableAutomaticContextPropagation();
+        }
+        
+        // Then
+        assertThat(result.isError()).isFalse();
+        Matcher tool = span("mcp.tool.call");
+        Matcher http = span("http.client.requests");
+        assertThat(tool.group(3)).isEqualTo("-");
+        assertThat(http.group(1)).isEqualTo(tool.group(1));
+        assertThat(http.group(3)).isEqualTo(tool.group(2));
+        assertThat(tool.group()).contains("contextualName=\"tool listProjects\"", "mcp.session=s1");
+    }
+    
+    private List<String> spanLines() {
+        return appender.list.stream().map(ILoggingEvent::getFormattedMessage).toList();
+    }
+    
+    private Matcher span(String name) {
+        return spanLines().stream()
+                .map(SPAN_LINE::matcher)
+                .filter(matcher -> matcher.matches() && matcher.group(4).equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No " + name + " span in " + spanLines()));
+    }
+}
@@ -0,0 +1,139 @@
+package rocks.euu.mcp.resources;
+
+import io.modelcontextprotocol.server.McpAsyncServer;
+import io.modelcontextprotocol.server.McpSyncServer;
+import io.modelcontextprotocol.spec.McpError;
+import io.modelcontextprotocol.spec.McpSchema;
+import rocks.euu.mcp.cache.ProjectTree;
+import rocks.euu.mcp.cache.WorkPackageCache;
+import rocks.euu.mcp.model.Project;
+import rocks.euu.mcp.model.WorkPackage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OpenProjectResources Unit Tests")
+class OpenProjectResourcesTest {
+    
+    @Mock
+    private ProjectTree mockProjectTree;
+    
+    @Mock
+    private WorkPackageCache mockWorkPackageCache;
+    
+    @Mock
+    private ObjectProvider<McpSyncServer> mockServerProvider;
+    
+    private OpenProjectResources resources;
+    
+    @BeforeEach
+    void setUp() {
+        resources = new OpenProjectResources(mockProjectTree, mockWorkPackageCache, mockServerProvider);
+    }
+    
+    @Test
+    @DisplayName("work package resources should be read from the cache by project identifier")
+    void testReadWorkPackages() {
+        // Given
+        when(mockProjectTree.find("my-project")).thenReturn(Optional.of(project(5, "my-project")));
+        WorkPackage workPackage = new WorkPackage();
+        workPackage.setId(42);
+        workPackage.setSubject("Set up CI pipeline");
+        when(mockWorkPackageCache.workPackages(5)).thenReturn(List.of(workPackage));
+        
+        // When
+        McpSchema.ReadResourceResult result = resources.read("openproject://projects/my-project/work_packages");
+        
+        // Then
+        McpSchema.TextResourceContents contents = (McpSchema.TextResourceContents) result.contents().get(0);
+        assertThat(contents.uri()).isEqualTo("openproject://projects/my-project/work_packages");
+        assertThat(contents.mimeType()).isEqualTo("application/json");
+        assertThat(contents.text()).isEqualTo("[{\"id\":42,\"subject\":\"Set up CI pipeline\"}]");
+    }
+    
+    @Test
+    @DisplayName("unknown projects should be reported as resource not found")
+    void testReadUnknownProject() {
+        // Given
+        when(mockProjectTree.find("unknown")).thenReturn(Optional.empty());
+        
+        // When / Then
+        assertThatThrownBy(() -> resources.read("openproject://projects/unknown"))
+                .isInstanceOf(McpError.class);
+        assertThatThrownBy(() -> resources.read("openproject://other"))
+                .isInstanceOf(McpError.class);
+    }
+    
+    @Test
+    @DisplayName("changed work packages should be announced under the project ID and identifier")
+    void testWorkPackagesChanged() {
+        // Given
+        McpSyncServer mockServer = mock(McpSyncServer.class);
+        McpAsyncServer mockAsyncServer = mock(McpAsyncServer.class);
+        when(mockServerProvider.getIfAvailable()).thenReturn(mockServer);
+        when(mockServer.getAsyncServer()).thenReturn(mockAsyncServer);
+        when(mockAsyncServer.notifyResourcesUpdated(any())).thenReturn(Mono.empty());
+        when(mockProjectTree.findLoaded(5)).thenReturn(Optional.of(project(5, "my-project")));
+        
+        // When
+        resources.workPackagesChanged(5);
+        
+        // Then
+        ArgumentCaptor<McpSchema.ResourcesUpdatedNotification> notifications =
+                ArgumentCaptor.forClass(McpSchema.ResourcesUpdatedNotification.class);
+        verify(mockAsyncServer, times(2)).notifyResourcesUpdated(notifications.capture());
+        assertThat(notifications.getAllValues()).extracting(McpSchema.ResourcesUpdatedNotification::uri)
+                .containsExactly("openproject://projects/5/work_packages",
+                        "openproject://projects/my-project/work_packages");
+    }
+    
+    @Test
+    @DisplayName("a write by this server should drop the project's cached work packages and announce them")
+    void testWorkPackagesWritten() {
+        // Given
+        McpSyncServer mockServer = mock(McpSyncServer.class);
+        McpAsyncServer mockAsyncServer = mock(McpAsyncServer.class);
+        when(mockServerProvider.getIfAvailable()).thenReturn(mockServer);
+        when(mockServer.getAsyncServer()).thenReturn(mockAsyncServer);
+        when(mockAsyncServer.notifyResourcesUpdated(any())).thenReturn(Mono.empty());
+        when(mockProjectTree.find("my-project")).thenReturn(Optional.of(project(5, "my-project")));
+        
+        // When
+        resources.workPackagesWritten("my-project");
+        resources.workPackagesWritten("7");
+        
+        // Then
+        verify(mockWorkPackageCache).invalidate(5);
+        verify(mockWorkPackageCache).invalidate(7);
+        ArgumentCaptor<McpSchema.ResourcesUpdatedNotification> notifications =
+                ArgumentCaptor.forClass(McpSchema.ResourcesUpdatedNotification.class);
+        verify(mockAsyncServer, times(2)).notifyResourcesUpdated(notifications.capture());
+        assertThat(notifications.getAllValues()).extracting(McpSchema.ResourcesUpdatedNotification::uri)
+                .containsExactly("openproject://projects/5/work_packages", "openproject://projects/7/work_packages");
+    }
+    
+    private static Project project(int id, String identifier) {
+        Project project = new Project();
+        project.setId(id);
+        project.setIdentifier(identifier);
+        return project;
+    }
+}
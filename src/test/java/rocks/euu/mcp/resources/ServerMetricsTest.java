@@ -0,0 +1,43 @@
+package rocks.euu.mcp.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.modelcontextprotocol.spec.McpSchema;
+import rocks.euu.mcp.client.UpstreamAdmission;
+import rocks.euu.mcp.config.OpenProjectProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ServerMetrics Unit Tests")
+class ServerMetricsTest {
+    
+    @Test
+    @DisplayName("the metrics resource should report admission state and queue wait per request class")
+    void testRead() throws Exception {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UpstreamAdmission admission = new UpstreamAdmission(new OpenProjectProperties(), meterRegistry);
+        meterRegistry.timer(UpstreamAdmission.QUEUE_WAIT_METRIC, "class", "bulk").record(Duration.ofMillis(30));
+        meterRegistry.timer(UpstreamAdmission.QUEUE_WAIT_METRIC, "class", "bulk").record(Duration.ofMillis(10));
+        ServerMetrics metrics = new ServerMetrics(admission, meterRegistry);
+        
+        // When
+        McpSchema.ReadResourceResult result = metrics.read();
+        
+        // Then
+        McpSchema.TextResourceContents contents = (McpSchema.TextResourceContents) result.contents().get(0);
+        assertThat(contents.uri()).isEqualTo(ServerMetrics.METRICS_URI);
+        JsonNode upstream = new ObjectMapper().readTree(contents.text()).get("upstream");
+        assertThat(upstream.get("inFlight").asInt()).isZero();
+        assertThat(upstream.get("queued").asInt()).isZero();
+        assertThat(upstream.get("queueWait").get("bulk").get("count").asLong()).isEqualTo(2);
+        assertThat(upstream.get("queueWait").get("bulk").get("totalMs").asDouble()).isEqualTo(40.0);
+        assertThat(upstream.get("queueWait").get("bulk").get("maxMs").asDouble()).isEqualTo(30.0);
+        assertThat(upstream.get("queueWait").get("interactive").get("count").asLong()).isZero();
+    }
+}
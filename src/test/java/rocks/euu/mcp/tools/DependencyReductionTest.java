@@ -0,0 +1,52 @@
+package rocks.euu.mcp.tools;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("DependencyReduction Unit Tests")
+class DependencyReductionTest {
+    
+    @Test
+    @DisplayName("dependencies implied by a longer path and duplicates should be dropped")
+    void testReduce() {
+        // Given: 1 on 0, 2 on 0 and 1, 3 on 0, 1 and 2 (twice), 4 on 0 and 3
+        int[][] dependsOn = {
+                null,
+                {0},
+                {0, 1},
+                {2, 0, 1, 2},
+                {0, 3}};
+        
+        // When
+        int[][] reduced = DependencyReduction.reduce(dependsOn);
+        
+        // Then
+        assertThat(reduced).isDeepEqualTo(new int[][] {{}, {0}, {1}, {2}, {3}});
+        assertThat(DependencyReduction.count(dependsOn) - DependencyReduction.count(reduced)).isEqualTo(5);
+    }
+    
+    @Test
+    @DisplayName("independent branches should be kept")
+    void testDiamond() {
+        // Given: 3 joins the parallel tasks 1 and 2, which both follow 0
+        int[][] dependsOn = {{}, {0}, {0}, {1, 2, 0}};
+        
+        // When
+        int[][] reduced = DependencyReduction.reduce(dependsOn);
+        
+        // Then
+        assertThat(reduced).isDeepEqualTo(new int[][] {{}, {0}, {0}, {1, 2}});
+    }
+    
+    @Test
+    @DisplayName("cycles and invalid indexes should be left alone apart from duplicates")
+    void testCycleAndInvalidIndexes() {
+        int[][] dependsOn = {{1}, {0, 0}, {0, 7}};
+        
+        int[][] reduced = DependencyReduction.reduce(dependsOn);
+        
+        assertThat(reduced).isDeepEqualTo(new int[][] {{1}, {0}, {0, 7}});
+    }
+}
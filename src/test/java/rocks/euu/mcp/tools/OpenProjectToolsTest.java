@@ -1,20 +1,43 @@
 package rocks.euu.mcp.tools;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import rocks.euu.mcp.cache.IdempotencyStore;
+import rocks.euu.mcp.cache.PageSnapshots;
+import rocks.euu.mcp.cache.ProjectTree;
+import rocks.euu.mcp.cache.ReferenceDataCache;
+import rocks.euu.mcp.client.LastKnown;
 import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.client.WorkPackageQuery;
+import rocks.euu.mcp.config.OpenProjectProperties;
 import rocks.euu.mcp.model.Project;
 import rocks.euu.mcp.model.Relation;
+import rocks.euu.mcp.model.Status;
+import rocks.euu.mcp.model.Type;
 import rocks.euu.mcp.model.WorkPackage;
+import rocks.euu.mcp.resources.OpenProjectResources;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -25,11 +48,35 @@ class OpenProjectToolsTest {
     @Mock
     private OpenProjectClient mockClient;
     
+    @Mock
+    private OpenProjectResources mockResources;
+    
     private OpenProjectTools tools;
     
     @BeforeEach
     void setUp() {
-        tools = new OpenProjectTools(mockClient);
+        tools = newTools(new ReferenceDataCache(mockClient));
+    }
+    
+    private OpenProjectTools newTools(ReferenceDataCache referenceData) {
+        OpenProjectProperties properties = new OpenProjectProperties();
+        return new OpenProjectTools(mockClient, referenceData, new IdempotencyStore(properties), 
+                new ProjectTree(mockClient), new PageSnapshots(properties), mockResources, properties);
+    }
+    
+    private static <T> LastKnown<T> fresh(T value) {
+        return new LastKnown<>(value, Instant.now(), false);
+    }
+    
+    private static List<WorkPackage> workPackages(int count) {
+        List<WorkPackage> workPackages = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            WorkPackage wp = new WorkPackage();
+            wp.setId(100 + i);
+            wp.setSubject("Task " + i);
+            workPackages.add(wp);
+        }
+        return workPackages;
     }
     
     @Test
@@ -40,15 +87,71 @@ class OpenProjectToolsTest {
         project.setId(1);
         project.setIdentifier("test-project");
         project.setName("Test Project");
-        when(mockClient.listProjects()).thenReturn(List.of(project));
+        when(mockClient.listProjectsOrLastKnown()).thenReturn(fresh(List.of(project)));
         
         // When
-        String result = tools.listProjects();
+        String result = tools.listProjects(null, null);
         
         // Then
         assertThat(result).contains("test-project");
         assertThat(result).contains("Test Project");
-        verify(mockClient).listProjects();
+        verify(mockClient).listProjectsOrLastKnown();
+    }
+    
+    @Test
+    @DisplayName("listProjects should mark the last known projects as stale")
+    void testListProjectsStale() {
+        // Given
+        Project project = new Project();
+        project.setId(1);
+        project.setName("Cached Project");
+        when(mockClient.listProjectsOrLastKnown()).thenReturn(
+                new LastKnown<>(List.of(project), Instant.parse("2026-01-05T10:00:00Z"), true));
+        
+        // When
+        String result = tools.listProjects(null, null);
+        
+        // Then
+        assertThat(result).contains("\"stale\" : true");
+        assertThat(result).contains("2026-01-05T10:00:00Z");
+        assertThat(result).contains("Cached Project");
+    }
+    
+    @Test
+    @DisplayName("getProjectTree should return a subtree and keep it up to date after createProject")
+    void testGetProjectTree() {
+        // Given
+        when(mockClient.listAllProjects()).thenReturn(List.of(
+                project(1, "marketing", null),
+                project(2, "campaigns", 1),
+                project(3, "engineering", null)));
+        when(mockClient.createProject("Newsletter", "newsletter", null, "campaigns"))
+                .thenReturn(project(4, "newsletter", 2));
+        
+        // When
+        String before = tools.getProjectTree("marketing", null);
+        tools.createProject("Newsletter", "newsletter", null, "campaigns", null);
+        String after = tools.getProjectTree("marketing", null);
+        
+        // Then
+        assertThat(before).contains("campaigns").doesNotContain("engineering").doesNotContain("newsletter");
+        assertThat(after).contains("newsletter");
+        verify(mockClient, times(1)).listAllProjects();
+    }
+    
+    private static Project project(int id, String identifier, Integer parentId) {
+        Project project = new Project();
+        project.setId(id);
+        project.setIdentifier(identifier);
+        project.setName(identifier);
+        if (parentId != null) {
+            Project.Link parent = new Project.Link();
+            parent.setHref("/api/v3/projects/" + parentId);
+            Project.Links links = new Project.Links();
+            links.setParent(parent);
+            project.setLinks(links);
+        }
+        return project;
     }
     
     @Test
@@ -60,15 +163,224 @@ class OpenProjectToolsTest {
         wp.setSubject("Test Task");
         wp.setStartDate("2025-02-01");
         wp.setDueDate("2025-02-05");
-        when(mockClient.listWorkPackages("my-project")).thenReturn(List.of(wp));
+        when(mockClient.listWorkPackagesOrLastKnown(eq("my-project"), any(WorkPackageQuery.class))).thenReturn(fresh(List.of(wp)));
         
         // When
-        String result = tools.listWorkPackages("my-project");
+        String result = tools.listWorkPackages("my-project", null, null, null, null, null, null, null, null, null, null, null);
         
         // Then
         assertThat(result).contains("Test Task");
         assertThat(result).contains("2025-02-01");
-        verify(mockClient).listWorkPackages("my-project");
+        verify(mockClient).listWorkPackagesOrLastKnown(eq("my-project"), any(WorkPackageQuery.class));
+    }
+    
+    @Test
+    @DisplayName("listWorkPackages should page with limit and cursor and serve later pages from the snapshot")
+    void testListWorkPackagesPaged() throws Exception {
+        // Given
+        when(mockClient.listWorkPackagesOrLastKnown(eq("my-project"), any(WorkPackageQuery.class)))
+                .thenReturn(fresh(workPackages(5)));
+        
+        // When
+        JsonNode first = new ObjectMapper().readTree(
+                tools.listWorkPackages("my-project", null, null, null, null, null, null, null, null, null, 2, null));
+        JsonNode second = new ObjectMapper().readTree(
+                tools.listWorkPackages("my-project", null, null, null, null, null, null, null, null, null, 2,
+                        first.get("nextCursor").asText()));
+        JsonNode last = new ObjectMapper().readTree(
+                tools.listWorkPackages(null, null, null, null, null, null, null, null, null, null, 10,
+                        second.get("nextCursor").asText()));
+        
+        // Then
+        assertThat(first.get("workPackages").findValuesAsText("subject")).containsExactly("Task 1", "Task 2");
+        assertThat(first.get("total").asInt()).isEqualTo(5);
+        assertThat(second.get("workPackages").findValuesAsText("subject")).containsExactly("Task 3", "Task 4");
+        assertThat(last.get("count").asInt()).isEqualTo(1);
+        assertThat(last.has("nextCursor")).isFalse();
+        verify(mockClient, times(1)).listWorkPackagesOrLastKnown(eq("my-project"), any(WorkPackageQuery.class));
+    }
+    
+    @Test
+    @DisplayName("listWorkPackages should split results over the byte budget into pages")
+    void testListWorkPackagesByteBudget() throws Exception {
+        // Given: room for two of the work packages
+        OpenProjectProperties properties = new OpenProjectProperties();
+        List<WorkPackage> workPackages = workPackages(5);
+        properties.setResponseByteBudget((new ObjectMapper().writeValueAsString(workPackages.get(0)).length() + 2) * 2);
+        tools = new OpenProjectTools(mockClient, new ReferenceDataCache(mockClient), new IdempotencyStore(properties),
+                new ProjectTree(mockClient), new PageSnapshots(properties), mockResources, properties);
+        when(mockClient.listWorkPackagesOrLastKnown(eq("my-project"), any(WorkPackageQuery.class)))
+                .thenReturn(fresh(workPackages));
+        
+        // When
+        JsonNode page = new ObjectMapper().readTree(
+                tools.listWorkPackages("my-project", null, null, null, null, null, null, null, null, null, null, null));
+        
+        // Then
+        assertThat(page.get("count").asInt()).isEqualTo(2);
+        assertThat(page.get("total").asInt()).isEqualTo(5);
+        assertThat(page.hasNonNull("nextCursor")).isTrue();
+        assertThatThrownBy(() -> tools.listWorkPackages(null, null, null, null, null, null, null, null, null, null,
+                null, "bm9wZTow"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("expired");
+    }
+    
+    @Test
+    @DisplayName("the byte budget should count UTF-8 bytes, not characters")
+    void testListWorkPackagesByteBudgetUtf8() throws Exception {
+        // Given: subjects of two-byte characters, so all three fit by characters but only one by bytes
+        OpenProjectProperties properties = new OpenProjectProperties();
+        List<WorkPackage> workPackages = workPackages(3);
+        workPackages.forEach(wp -> wp.setSubject("Prüfung " + "ä".repeat(200)));
+        int chars = 0;
+        for (WorkPackage wp : workPackages) {
+            chars += new ObjectMapper().writeValueAsString(wp).length() + 2;
+        }
+        properties.setResponseByteBudget(chars);
+        tools = new OpenProjectTools(mockClient, new ReferenceDataCache(mockClient), new IdempotencyStore(properties),
+                new ProjectTree(mockClient), new PageSnapshots(properties), mockResources, properties);
+        when(mockClient.listWorkPackagesOrLastKnown(eq("my-project"), any(WorkPackageQuery.class)))
+                .thenReturn(fresh(workPackages));
+        
+        // When
+        String response = tools.listWorkPackages("my-project", null, null, null, null, null, null, null, null, null,
+                null, null);
+        
+        // Then
+        JsonNode page = new ObjectMapper().readTree(response);
+        assertThat(page.get("count").asInt()).isEqualTo(1);
+        assertThat(page.get("total").asInt()).isEqualTo(3);
+        assertThat(page.get("workPackages").findValuesAsText("subject")).containsExactly("Prüfung " + "ä".repeat(200));
+        assertThat(page.hasNonNull("nextCursor")).isTrue();
+    }
+    
+    @Test
+    @DisplayName("getWorkPackages should return the work packages in input order and report missing IDs")
+    void testGetWorkPackages() throws Exception {
+        // Given
+        List<WorkPackage> workPackages = workPackages(3);
+        when(mockClient.getWorkPackages(any(), anyInt()))
+                .thenReturn(Flux.just(workPackages.get(2), workPackages.get(0), workPackages.get(1)));
+        
+        // When
+        JsonNode result = new ObjectMapper().readTree(tools.getWorkPackages("102, 999, 101, 103, 102"));
+        
+        // Then
+        assertThat(result.get("workPackages").findValuesAsText("subject")).containsExactly("Task 2", "Task 1", "Task 3");
+        assertThat(result.get("missing").toString()).isEqualTo("[999]");
+        verify(mockClient).getWorkPackages(eq(new LinkedHashSet<>(List.of(102, 999, 101, 103))), eq(4));
+    }
+    
+    @Test
+    @DisplayName("listWorkPackages should pass filters and sort order to the client")
+    void testListWorkPackagesWithFilters() {
+        // Given
+        Type milestone = new Type();
+        milestone.setId(2);
+        milestone.setName("Milestone");
+        when(mockClient.listTypes()).thenReturn(List.of(milestone));
+        
+        ReferenceDataCache referenceData = new ReferenceDataCache(mockClient);
+        referenceData.refresh();
+        tools = newTools(referenceData);
+        when(mockClient.listWorkPackagesOrLastKnown(eq("my-project"), any(WorkPackageQuery.class))).thenReturn(fresh(List.of()));
+        
+        // When
+        tools.listWorkPackages("my-project", "open", "Milestone", "42", null, null,
+                "2025-02-01", "2025-02-07", "Review", "dueDate:asc", null, null);
+        
+        // Then
+        ArgumentCaptor<WorkPackageQuery> query = ArgumentCaptor.forClass(WorkPackageQuery.class);
+        verify(mockClient).listWorkPackagesOrLastKnown(eq("my-project"), query.capture());
+        assertThat(query.getValue().getStatusState()).isEqualTo("open");
+        assertThat(query.getValue().getTypeIds()).containsExactly(2);
+        assertThat(query.getValue().getAssigneeIds()).containsExactly(42);
+        assertThat(query.getValue().getDueDateFrom()).isEqualTo("2025-02-01");
+        assertThat(query.getValue().getDueDateTo()).isEqualTo("2025-02-07");
+        assertThat(query.getValue().getSubjectContains()).isEqualTo("Review");
+        assertThat(query.getValue().getSortBy()).containsExactly(new String[] { "dueDate", "asc" });
+    }
+    
+    @Test
+    @DisplayName("projectStatistics should use groupBy counts when OpenProject returns groups")
+    void testProjectStatisticsGroupBy() {
+        // Given
+        when(mockClient.countWorkPackagesGroupedBy(eq("my-project"), any(), eq("status")))
+                .thenReturn(Optional.of(Map.of("New", 3, "Closed", 2)));
+        when(mockClient.countWorkPackagesGroupedBy(eq("my-project"), any(), eq("type")))
+                .thenReturn(Optional.of(Map.of("Task", 5)));
+        when(mockClient.countWorkPackagesGroupedBy(eq("my-project"), any(), eq("assignee")))
+                .thenReturn(Optional.of(Map.of("(none)", 5)));
+        
+        // When
+        String result = tools.projectStatistics("my-project", null);
+        
+        // Then
+        assertThat(result).contains("\"source\" : \"groupBy\"");
+        assertThat(result).contains("\"total\" : 5");
+        verify(mockClient, never()).streamWorkPackages(any(), any());
+    }
+    
+    @Test
+    @DisplayName("projectStatistics should stream work packages for a due date histogram")
+    void testProjectStatisticsStreaming() {
+        // Given
+        WorkPackage overdue = new WorkPackage();
+        overdue.setId(1);
+        overdue.setDueDate("2000-01-03");
+        WorkPackage future = new WorkPackage();
+        future.setId(2);
+        future.setDueDate("2999-01-05");
+        WorkPackage undated = new WorkPackage();
+        undated.setId(3);
+        when(mockClient.streamWorkPackages(eq("my-project"), any())).thenReturn(Flux.just(overdue, future, undated));
+        
+        // When
+        String result = tools.projectStatistics("my-project", "month");
+        
+        // Then
+        assertThat(result).contains("\"source\" : \"stream\"");
+        assertThat(result).contains("\"total\" : 3");
+        assertThat(result).contains("\"overdue\" : 1");
+        assertThat(result).contains("\"withoutDueDate\" : 1");
+        assertThat(result).contains("\"2000-01\" : 1");
+        assertThat(result).contains("\"2999-01\" : 1");
+        verify(mockClient, never()).countWorkPackagesGroupedBy(any(), any(), any());
+    }
+    
+    @Test
+    @DisplayName("queryAcrossProjects should merge per-project results into one sorted list")
+    void testQueryAcrossProjects() {
+        // Given
+        Project alpha = new Project();
+        alpha.setId(1);
+        alpha.setIdentifier("alpha");
+        Project beta = new Project();
+        beta.setId(2);
+        beta.setIdentifier("beta");
+        when(mockClient.listAllProjects()).thenReturn(List.of(alpha, beta));
+        when(mockClient.openWorkPackageStream(eq("1"), any()))
+                .thenReturn(Mono.just(Flux.just(dueOn(11, "2025-03-01"), dueOn(12, "2025-03-10"), dueOn(13, "2025-03-20"))));
+        when(mockClient.openWorkPackageStream(eq("2"), any()))
+                .thenReturn(Mono.just(Flux.just(dueOn(21, "2025-03-05"), dueOn(22, "2025-03-15"))));
+        
+        // When
+        String result = tools.queryAcrossProjects(null, null, null, null, null, null, null, "dueDate:asc", 4);
+        
+        // Then
+        assertThat(result).contains("\"count\" : 4");
+        assertThat(result.indexOf("\"id\" : 11")).isLessThan(result.indexOf("\"id\" : 21"));
+        assertThat(result.indexOf("\"id\" : 21")).isLessThan(result.indexOf("\"id\" : 12"));
+        assertThat(result.indexOf("\"id\" : 12")).isLessThan(result.indexOf("\"id\" : 22"));
+        assertThat(result).doesNotContain("\"id\" : 13");
+    }
+    
+    private static WorkPackage dueOn(int id, String dueDate) {
+        WorkPackage wp = new WorkPackage();
+        wp.setId(id);
+        wp.setDueDate(dueDate);
+        return wp;
     }
     
     @Test
@@ -93,13 +405,75 @@ class OpenProjectToolsTest {
                 "New Task", 
                 "2025-02-15", 
                 "2025-02-20",
-                "Description");
+                "Description",
+                null,
+                null);
         
         // Then
         assertThat(result).contains("201");
         assertThat(result).contains("New Task");
         verify(mockClient).createWorkPackage(
                 "my-project", "New Task", "2025-02-15", "2025-02-20", "Description", null);
+        verify(mockResources).workPackagesWritten("my-project");
+    }
+    
+    @Test
+    @DisplayName("createWorkPackage should resolve the type name from the reference data cache")
+    void testCreateWorkPackageWithTypeName() {
+        // Given
+        Type task = new Type();
+        task.setId(1);
+        task.setName("Task");
+        task.setIsDefault(true);
+        Type milestone = new Type();
+        milestone.setId(2);
+        milestone.setName("Milestone");
+        when(mockClient.listTypes()).thenReturn(List.of(task, milestone));
+        
+        ReferenceDataCache referenceData = new ReferenceDataCache(mockClient);
+        referenceData.refresh();
+        tools = newTools(referenceData);
+        
+        WorkPackage wp = new WorkPackage();
+        wp.setId(202);
+        when(mockClient.createWorkPackage(any(), any(), any(), any(), any(), any())).thenReturn(wp);
+        
+        // When
+        tools.createWorkPackage("my-project", "Go-Live", "2025-03-01", "2025-03-01", null, "milestone", null);
+        tools.createWorkPackage("my-project", "Prepare", "2025-02-20", "2025-02-28", null, null, null);
+        
+        // Then
+        verify(mockClient).createWorkPackage("my-project", "Go-Live", "2025-03-01", "2025-03-01", null, 2);
+        verify(mockClient).createWorkPackage("my-project", "Prepare", "2025-02-20", "2025-02-28", null, 1);
+    }
+    
+    @Test
+    @DisplayName("listWorkPackages should fill in status names from the reference data cache")
+    void testListWorkPackagesWithStatusNames() {
+        // Given
+        Status inProgress = new Status();
+        inProgress.setId(7);
+        inProgress.setName("In progress");
+        when(mockClient.listStatuses()).thenReturn(List.of(inProgress));
+        
+        ReferenceDataCache referenceData = new ReferenceDataCache(mockClient);
+        referenceData.refresh();
+        tools = newTools(referenceData);
+        
+        WorkPackage.Link status = new WorkPackage.Link();
+        status.setHref("/api/v3/statuses/7");
+        WorkPackage.Links links = new WorkPackage.Links();
+        links.setStatus(status);
+        WorkPackage wp = new WorkPackage();
+        wp.setId(101);
+        wp.setLinks(links);
+        when(mockClient.listWorkPackagesOrLastKnown(eq("my-project"), any(WorkPackageQuery.class))).thenReturn(fresh(List.of(wp)));
+        
+        // When
+        String result = tools.listWorkPackages("my-project", null, null, null, null, null, null, null, null, null, null, null);
+        
+        // Then
+        assertThat(result).contains("In progress");
     }
     
     @Test
@@ -112,13 +486,31 @@ class OpenProjectToolsTest {
         when(mockClient.createRelation(102, 101, "follows")).thenReturn(relation);
         
         // When
-        String result = tools.createDependency(102, 101);
+        String result = tools.createDependency(102, 101, null);
         
         // Then
         assertThat(result).contains("follows");
         verify(mockClient).createRelation(102, 101, "follows");
     }
     
+    @Test
+    @DisplayName("createWorkPackage should not create a duplicate when retried with the same idempotency key")
+    void testCreateWorkPackageIdempotent() {
+        // Given
+        WorkPackage wp = new WorkPackage();
+        wp.setId(203);
+        wp.setSubject("Retried Task");
+        when(mockClient.createWorkPackage(any(), any(), any(), any(), any(), any())).thenReturn(wp);
+        
+        // When
+        String first = tools.createWorkPackage("my-project", "Retried Task", null, null, null, null, "key-1");
+        String retry = tools.createWorkPackage("my-project", "Retried Task", null, null, null, null, "key-1");
+        
+        // Then
+        assertThat(retry).isEqualTo(first);
+        verify(mockClient, times(1)).createWorkPackage(any(), any(), any(), any(), any(), any());
+    }
+    
     @Test
     @DisplayName("createProjectPlan should create multiple tasks with dependencies")
     void testCreateProjectPlan() {
@@ -159,7 +551,7 @@ class OpenProjectToolsTest {
             """;
         
         // When
-        String result = tools.createProjectPlan("my-project", tasksJson);
+        String result = tools.createProjectPlan("my-project", tasksJson, null, null, null, null);
         
         // Then
         assertThat(result).contains("\"success\":true");
@@ -176,17 +568,157 @@ class OpenProjectToolsTest {
         verify(mockClient).createRelation(1003, 1002, "follows"); // Testing follows Development
     }
     
+    @Test
+    @DisplayName("createProjectPlan should compute the dates of tasks with a duration before creating them")
+    void testCreateProjectPlanWithDurations() {
+        // Given
+        WorkPackage wp1 = new WorkPackage();
+        wp1.setId(1001);
+        WorkPackage wp2 = new WorkPackage();
+        wp2.setId(1002);
+        when(mockClient.createWorkPackage(eq("my-project"), eq("Design"), eq("2025-02-03"), eq("2025-02-07"), any(), any()))
+                .thenReturn(wp1);
+        when(mockClient.createWorkPackage(eq("my-project"), eq("Development"), eq("2025-02-11"), eq("2025-02-24"), any(), any()))
+                .thenReturn(wp2);
+        when(mockClient.createRelation(1002, 1001, "follows")).thenReturn(new Relation());
+        
+        String tasksJson = """
+            [
+                {"subject":"Design","duration":5},
+                {"subject":"Development","duration":10,"dependsOn":[0]}
+            ]
+            """;
+        
+        // When: the plan starts on a Saturday and Monday 10 Feb is a holiday
+        String result = tools.createProjectPlan("my-project", tasksJson, "2025-02-01", "2025-02-10", null, null);
+        
+        // Then
+        assertThat(result).contains("\"success\":true");
+        assertThat(result).contains("\"relationsSaved\":0");
+        assertThat(result).contains("\"dates\":[[\"2025-02-03\",\"2025-02-07\"],[\"2025-02-11\",\"2025-02-24\"]]");
+    }
+    
     @Test
     @DisplayName("createProjectPlan should handle invalid JSON gracefully")
     void testCreateProjectPlanWithInvalidJson() {
         // When
-        String result = tools.createProjectPlan("my-project", "not valid json");
+        String result = tools.createProjectPlan("my-project", "not valid json", null, null, null, null);
         
         // Then
         assertThat(result).contains("\"success\":false");
         assertThat(result).contains("error");
     }
     
+    @Test
+    @DisplayName("createProjectPlan should return partial IDs when creation fails midway")
+    void testCreateProjectPlanPartialFailure() {
+        // Given
+        WorkPackage wp1 = new WorkPackage();
+        wp1.setId(1001);
+        wp1.setSubject("Design");
+        
+        when(mockClient.createWorkPackage(eq("my-project"), eq("Design"), any(), any(), any(), any()))
+                .thenReturn(wp1);
+        when(mockClient.createWorkPackage(eq("my-project"), eq("Development"), any(), any(), any(), any()))
+                .thenThrow(new RuntimeException("Failed to create work package: 503 Service Unavailable"));
+        
+        String tasksJson = """
+            [
+                {"subject":"Design","startDate":"2025-02-01","dueDate":"2025-02-05"},
+                {"subject":"Development","startDate":"2025-02-06","dueDate":"2025-02-15","dependsOn":[0]}
+            ]
+            """;
+        
+        // When
+        String result = tools.createProjectPlan("my-project", tasksJson, null, null, null, null);
+        
+        // Then
+        assertThat(result).contains("\"success\":false");
+        assertThat(result).contains("\"workPackagesCreated\":1");
+        assertThat(result).contains("\"ids\":[1001]");
+        assertThat(result).contains("503 Service Unavailable");
+        verify(mockClient, never()).createRelation(anyInt(), anyInt(), any());
+    }
+    
+    @Test
+    @DisplayName("copyPlan should copy work packages with shifted dates and remap relations")
+    void testCopyPlan() {
+        // Given
+        WorkPackage design = templateTask(11, "Design", "2025-01-06", "2025-01-10");
+        WorkPackage build = templateTask(12, "Build", "2025-01-13", "2025-01-24");
+        when(mockClient.getProject("template")).thenReturn(project(1, "template", null));
+        when(mockClient.getProject("new-project")).thenReturn(project(2, "new-project", null));
+        when(mockClient.countWorkPackages(eq("template"), any(WorkPackageQuery.class))).thenReturn(2);
+        when(mockClient.streamWorkPackages(eq("template"), any(WorkPackageQuery.class)))
+                .thenReturn(Flux.just(design, build));
+        when(mockClient.createWorkPackageAsync("new-project", "Design", "2025-03-03", "2025-03-07", "Design notes", 2))
+                .thenReturn(Mono.just(dueOn(101, "2025-03-07")));
+        when(mockClient.createWorkPackageAsync("new-project", "Build", "2025-03-10", "2025-03-21", "Build notes", 2))
+                .thenReturn(Mono.just(dueOn(102, "2025-03-21")));
+        
+        Relation follows = relation(7, "follows", 12, 11);
+        Relation external = relation(8, "relates", 11, 99);
+        when(mockClient.streamRelations(any())).thenReturn(Flux.just(follows, external, follows));
+        when(mockClient.createRelationAsync(102, 101, "follows")).thenReturn(Mono.just(new Relation()));
+        
+        // When
+        String result = tools.copyPlan("template", "new-project", 56, null);
+        
+        // Then
+        assertThat(result).contains("\"success\" : true");
+        assertThat(result).contains("\"workPackagesCreated\" : 2");
+        assertThat(result).contains("\"relationsCreated\" : 1");
+        assertThat(result).contains("\"relationsSkipped\" : 1");
+        assertThat(result).contains("\"11\" : 101").contains("\"12\" : 102");
+        verify(mockClient, times(1)).createRelationAsync(102, 101, "follows");
+        verify(mockClient, never()).createRelationAsync(anyInt(), eq(99), anyString());
+    }
+    
+    @Test
+    @DisplayName("copyPlan should reject copying a project into itself before writing")
+    void testCopyPlanIntoItself() {
+        // Given: the same project by identifier and by numeric ID
+        when(mockClient.getProject("demo")).thenReturn(project(3, "demo", null));
+        when(mockClient.getProject("3")).thenReturn(project(3, "demo", null));
+        
+        // When / Then
+        assertThatThrownBy(() -> tools.copyPlan("demo", "3", 0, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("into itself");
+        verify(mockClient, never()).streamWorkPackages(anyString(), any());
+        verify(mockClient, never()).createWorkPackageAsync(anyString(), anyString(), any(), any(), any(), any());
+    }
+    
+    private static WorkPackage templateTask(int id, String subject, String startDate, String dueDate) {
+        WorkPackage wp = dueOn(id, dueDate);
+        wp.setSubject(subject);
+        wp.setStartDate(startDate);
+        WorkPackage.Description description = new WorkPackage.Description();
+        description.setRaw(subject + " notes");
+        wp.setDescription(description);
+        WorkPackage.Link type = new WorkPackage.Link();
+        type.setHref("/api/v3/types/2");
+        WorkPackage.Links links = new WorkPackage.Links();
+        links.setType(type);
+        wp.setLinks(links);
+        return wp;
+    }
+    
+    private static Relation relation(int id, String type, int fromId, int toId) {
+        Relation.Link from = new Relation.Link();
+        from.setHref("/api/v3/work_packages/" + fromId);
+        Relation.Link to = new Relation.Link();
+        to.setHref("/api/v3/work_packages/" + toId);
+        Relation.Links links = new Relation.Links();
+        links.setFrom(from);
+        links.setTo(to);
+        Relation relation = new Relation();
+        relation.setId(id);
+        relation.setType(type);
+        relation.setLinks(links);
+        return relation;
+    }
+    
     @Test
     @DisplayName("deleteWorkPackage should delete and return success")
     void testDeleteWorkPackage() {
@@ -197,5 +729,6 @@ class OpenProjectToolsTest {
         assertThat(result).contains("\"success\":true");
         assertThat(result).contains("201");
         verify(mockClient).deleteWorkPackage(201);
+        verify(mockResources).workPackageDeleted(201);
     }
 }
@@ -0,0 +1,220 @@
+package rocks.euu.mcp.tools;
+
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.model.Relation;
+import rocks.euu.mcp.model.WorkPackage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PlanApply Unit Tests")
+class PlanApplyTest {
+    
+    @Mock
+    private OpenProjectClient mockClient;
+    
+    private static final List<PlanApply.Task> PLAN = List.of(
+            new PlanApply.Task("design", "Design", "2025-02-01", "2025-02-05", null, null, null),
+            new PlanApply.Task("build", "Build", "2025-02-06", "2025-02-15", null, null, List.of("design")),
+            new PlanApply.Task("test", "Test", "2025-02-16", "2025-02-20", null, null, List.of("build")));
+    
+    @Test
+    @DisplayName("re-applying an unchanged plan should only read")
+    void testUnchangedPlan() {
+        // Given
+        givenProject(
+                List.of(task(11, "design", "Design", "2025-02-01", "2025-02-05"),
+                        task(12, "build", "Build", "2025-02-06", "2025-02-15"),
+                        task(13, "test", "Test", "2025-02-16", "2025-02-20"),
+                        untracked(14)),
+                // OpenProject may report a follows relation as precedes from the other side
+                relation(7, "follows", 12, 11), relation(8, "precedes", 12, 13));
+        
+        // When
+        PlanApply.Result result = apply(PLAN, true, false);
+        
+        // Then
+        assertThat(result.diff().size()).isZero();
+        assertThat(result.diff().unchanged()).isEqualTo(3);
+        assertThat(result.ids()).containsEntry("design", 11).containsEntry("test", 13).hasSize(3);
+        verify(mockClient).streamWorkPackages(eq("my-project"), any());
+        verify(mockClient).streamRelations(any());
+        verifyNoMoreInteractions(mockClient);
+    }
+    
+    @Test
+    @DisplayName("an edited plan should apply only the differences")
+    void testEditedPlan() {
+        // Given
+        givenProject(
+                List.of(task(11, "design", "Design", "2025-02-01", "2025-02-05"),
+                        task(12, "build", "Build", "2025-02-06", "2025-02-15"),
+                        task(13, "test", "Test", "2025-02-16", "2025-02-20"),
+                        task(15, "docs", "Docs", "2025-02-16", "2025-02-18")),
+                relation(7, "follows", 12, 11), relation(8, "follows", 13, 12), relation(9, "follows", 15, 12));
+        List<PlanApply.Task> edited = List.of(
+                new PlanApply.Task("design", "Design", "2025-02-01", "2025-02-05", null, null, null),
+                new PlanApply.Task("build", "Build v2", "2025-02-06", "2025-02-18", null, null, List.of("design")),
+                new PlanApply.Task("review", "Review", "2025-02-19", "2025-02-19", null, null, List.of("build")),
+                new PlanApply.Task("test", "Test", "2025-02-20", null, null, null, List.of("review")));
+        when(mockClient.createWorkPackageAsync(eq("my-project"), eq("Review"), eq("2025-02-19"), eq("2025-02-19"),
+                eq("<!-- plan-key: review -->"), any()))
+                .thenReturn(Mono.just(task(16, "review", "Review", "2025-02-19", "2025-02-19")));
+        when(mockClient.updateWorkPackageAsync(12, 1, "Build v2", null, "2025-02-18", null, null))
+                .thenReturn(Mono.just(new WorkPackage()));
+        when(mockClient.updateWorkPackageAsync(13, 1, null, "2025-02-20", null, null, null))
+                .thenReturn(Mono.just(new WorkPackage()));
+        when(mockClient.deleteRelationAsync(8)).thenReturn(Mono.empty());
+        when(mockClient.createRelationAsync(anyInt(), anyInt(), eq("follows"))).thenReturn(Mono.just(new Relation()));
+        when(mockClient.deleteWorkPackageAsync(15)).thenReturn(Mono.empty());
+        
+        // When
+        PlanApply.Result result = apply(edited, true, false);
+        
+        // Then
+        assertThat(result.errors()).isEmpty();
+        assertThat(result.applied()).isEqualTo(7);
+        assertThat(result.diff().updates()).extracting(PlanApply.Update::key).containsExactly("build", "test");
+        assertThat(result.ids()).containsEntry("review", 16).doesNotContainKey("docs");
+        verify(mockClient).createRelationAsync(16, 12, "follows");
+        verify(mockClient).createRelationAsync(13, 16, "follows");
+        verify(mockClient, never()).deleteRelationAsync(9);
+        verify(mockClient, never()).createRelationAsync(12, 11, "follows");
+    }
+    
+    @Test
+    @DisplayName("an update rejected because OpenProject rescheduled the work package should be retried once")
+    void testUpdateConflictRetried() {
+        // Given: moving 'design' made OpenProject reschedule 'build', bumping its lock version to 2
+        givenProject(
+                List.of(task(11, "design", "Design", "2025-02-01", "2025-02-05"),
+                        task(12, "build", "Build", "2025-02-06", "2025-02-15"),
+                        task(13, "test", "Test", "2025-02-16", "2025-02-20")),
+                relation(7, "follows", 12, 11), relation(8, "follows", 13, 12));
+        List<PlanApply.Task> moved = List.of(
+                new PlanApply.Task("design", "Design", "2025-02-03", "2025-02-07", null, null, null),
+                new PlanApply.Task("build", "Build", "2025-02-10", "2025-02-19", null, null, List.of("design")),
+                new PlanApply.Task("test", "Test", "2025-02-16", "2025-02-20", null, null, List.of("build")));
+        when(mockClient.updateWorkPackageAsync(11, 1, null, "2025-02-03", "2025-02-07", null, null))
+                .thenReturn(Mono.just(new WorkPackage()));
+        when(mockClient.updateWorkPackageAsync(12, 1, null, "2025-02-10", "2025-02-19", null, null))
+                .thenReturn(Mono.error(new RuntimeException("Failed to update work package: 409 Conflict",
+                        WebClientResponseException.create(409, "Conflict", null, null, null))));
+        WorkPackage rescheduled = task(12, "build", "Build", "2025-02-08", "2025-02-17");
+        rescheduled.setLockVersion(2);
+        when(mockClient.getWorkPackages(List.of(12), 1)).thenReturn(Flux.just(rescheduled));
+        when(mockClient.updateWorkPackageAsync(12, 2, null, "2025-02-10", "2025-02-19", null, null))
+                .thenReturn(Mono.just(new WorkPackage()));
+        
+        // When
+        PlanApply.Result result = apply(moved, false, false);
+        
+        // Then
+        assertThat(result.errors()).isEmpty();
+        assertThat(result.applied()).isEqualTo(2);
+        verify(mockClient).updateWorkPackageAsync(12, 2, null, "2025-02-10", "2025-02-19", null, null);
+    }
+    
+    @Test
+    @DisplayName("a dry run should return the differences without writing")
+    void testDryRun() {
+        // Given
+        givenProject(List.of(task(11, "design", "Design", "2025-02-01", "2025-02-05")));
+        
+        // When
+        PlanApply.Result result = apply(PLAN, false, true);
+        
+        // Then
+        assertThat(result.diff().creates()).extracting(PlanApply.Task::key).containsExactly("build", "test");
+        assertThat(result.diff().relationsToAdd()).hasSize(2);
+        assertThat(result.applied()).isZero();
+        verify(mockClient, never()).createWorkPackageAsync(anyString(), anyString(), any(), any(), any(), any());
+        verify(mockClient, never()).createRelationAsync(anyInt(), anyInt(), anyString());
+    }
+    
+    @Test
+    @DisplayName("dependencies on unknown keys should be rejected before reading the project")
+    void testUnknownDependency() {
+        List<PlanApply.Task> plan = List.of(
+                new PlanApply.Task("build", "Build", null, null, null, null, List.of("design")));
+        
+        assertThatThrownBy(() -> apply(plan, false, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("'design'");
+        verifyNoMoreInteractions(mockClient);
+    }
+    
+    @Test
+    @DisplayName("a task that depends on itself should be rejected as such")
+    void testSelfDependency() {
+        List<PlanApply.Task> plan = List.of(
+                new PlanApply.Task("build", "Build", null, null, null, null, List.of("build")));
+        
+        assertThatThrownBy(() -> apply(plan, false, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Task 'build' depends on itself");
+        verifyNoMoreInteractions(mockClient);
+    }
+    
+    private PlanApply.Result apply(List<PlanApply.Task> plan, boolean deleteMissing, boolean dryRun) {
+        return new PlanApply(mockClient, type -> 1, 4)
+                .run("my-project", plan, deleteMissing, dryRun, ProgressReporter.from(null));
+    }
+    
+    private void givenProject(List<WorkPackage> workPackages, Relation... relations) {
+        when(mockClient.streamWorkPackages(eq("my-project"), any())).thenReturn(Flux.fromIterable(workPackages));
+        when(mockClient.streamRelations(any())).thenReturn(Flux.just(relations));
+    }
+    
+    private static WorkPackage task(int id, String key, String subject, String startDate, String dueDate) {
+        WorkPackage wp = untracked(id);
+        wp.setSubject(subject);
+        wp.setStartDate(startDate);
+        wp.setDueDate(dueDate);
+        wp.getDescription().setRaw(PlanApply.withKey("Notes", key));
+        return wp;
+    }
+    
+    private static WorkPackage untracked(int id) {
+        WorkPackage wp = new WorkPackage();
+        wp.setId(id);
+        wp.setLockVersion(1);
+        wp.setSubject("Untracked " + id);
+        wp.setDescription(new WorkPackage.Description());
+        return wp;
+    }
+    
+    private static Relation relation(int id, String type, int fromId, int toId) {
+        Relation.Link from = new Relation.Link();
+        from.setHref("/api/v3/work_packages/" + fromId);
+        Relation.Link to = new Relation.Link();
+        to.setHref("/api/v3/work_packages/" + toId);
+        Relation.Links links = new Relation.Links();
+        links.setFrom(from);
+        links.setTo(to);
+        Relation relation = new Relation();
+        relation.setId(id);
+        relation.setType(type);
+        relation.setLinks(links);
+        return relation;
+    }
+}
@@ -0,0 +1,75 @@
+package rocks.euu.mcp.tools;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("PlanScheduler Unit Tests")
+class PlanSchedulerTest {
+    
+    private static final LocalDate MONDAY = LocalDate.of(2025, 3, 3);
+    
+    @Test
+    @DisplayName("tasks should start after their latest predecessor and skip weekends and holidays")
+    void testForwardPass() {
+        // Given: 0 and 1 run in parallel, 2 waits for both and 3 is a milestone after 2
+        PlanScheduler scheduler = new PlanScheduler(Set.of(LocalDate.of(2025, 3, 12)));
+        List<PlanScheduler.Task> tasks = List.of(
+                new PlanScheduler.Task(null, null, 3, null),
+                new PlanScheduler.Task(null, null, 6, null),
+                new PlanScheduler.Task(null, null, 2, new int[] {0, 1}),
+                new PlanScheduler.Task(null, null, 0, new int[] {2}));
+        
+        // When
+        List<PlanScheduler.Dates> dates = scheduler.schedule(tasks, MONDAY);
+        
+        // Then
+        assertThat(dates.get(0)).isEqualTo(dates(MONDAY, LocalDate.of(2025, 3, 5)));
+        assertThat(dates.get(1)).isEqualTo(dates(MONDAY, LocalDate.of(2025, 3, 10)));
+        assertThat(dates.get(2)).isEqualTo(dates(LocalDate.of(2025, 3, 11), LocalDate.of(2025, 3, 13)));
+        assertThat(dates.get(3)).isEqualTo(dates(LocalDate.of(2025, 3, 14), LocalDate.of(2025, 3, 14)));
+    }
+    
+    @Test
+    @DisplayName("fixed dates should be kept and count as the end for successors")
+    void testFixedDates() {
+        // Given
+        PlanScheduler scheduler = new PlanScheduler(Set.of());
+        List<PlanScheduler.Task> tasks = List.of(
+                new PlanScheduler.Task(MONDAY, LocalDate.of(2025, 3, 7), null, null),
+                new PlanScheduler.Task(LocalDate.of(2025, 3, 20), null, 1, new int[] {0}),
+                new PlanScheduler.Task(null, null, 1, new int[] {0}));
+        
+        // When
+        List<PlanScheduler.Dates> dates = scheduler.schedule(tasks, MONDAY);
+        
+        // Then
+        assertThat(dates.get(0)).isEqualTo(dates(MONDAY, LocalDate.of(2025, 3, 7)));
+        assertThat(dates.get(1)).isEqualTo(dates(LocalDate.of(2025, 3, 20), LocalDate.of(2025, 3, 20)));
+        assertThat(dates.get(2)).isEqualTo(dates(LocalDate.of(2025, 3, 10), LocalDate.of(2025, 3, 10)));
+    }
+    
+    @Test
+    @DisplayName("dependency cycles should be rejected")
+    void testCycle() {
+        PlanScheduler scheduler = new PlanScheduler(Set.of());
+        List<PlanScheduler.Task> tasks = List.of(
+                new PlanScheduler.Task(null, null, 1, null),
+                new PlanScheduler.Task(null, null, 1, new int[] {0, 2}),
+                new PlanScheduler.Task(null, null, 1, new int[] {1}));
+        
+        assertThatThrownBy(() -> scheduler.schedule(tasks, MONDAY))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("[1, 2]");
+    }
+    
+    private static PlanScheduler.Dates dates(LocalDate start, LocalDate due) {
+        return new PlanScheduler.Dates(start, due);
+    }
+}
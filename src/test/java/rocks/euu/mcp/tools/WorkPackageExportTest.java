@@ -0,0 +1,109 @@
+package rocks.euu.mcp.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.client.WorkPackageQuery;
+import rocks.euu.mcp.model.WorkPackage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WorkPackageExport Unit Tests")
+class WorkPackageExportTest {
+    
+    @Mock
+    private OpenProjectClient mockClient;
+    
+    @TempDir
+    private Path directory;
+    
+    @Test
+    @DisplayName("CSV export should write all pages and quote special characters")
+    void testCsvExport() throws IOException {
+        // Given
+        when(mockClient.streamWorkPackagePages(eq("my-project"), any(WorkPackageQuery.class))).thenReturn(Flux.just(
+                List.of(workPackage(1, "Plain"), workPackage(2, "Say \"hi\", then go")),
+                List.of(workPackage(3, "Two\nlines"))));
+        
+        // When
+        WorkPackageExport.Result result = new WorkPackageExport(mockClient, directory)
+                .run("my-project", WorkPackageQuery.none(), WorkPackageExport.Format.CSV);
+        
+        // Then
+        assertThat(result.rows()).isEqualTo(3);
+        assertThat(result.pages()).isEqualTo(2);
+        assertThat(result.path().getFileName().toString()).startsWith("work-packages-my-project-").endsWith(".csv");
+        assertThat(Files.readString(result.path())).isEqualTo(
+                "id,subject,type,status,priority,assignee,startDate,dueDate,estimatedTime\r\n" +
+                "1,Plain,Task,,,,,2025-03-01,\r\n" +
+                "2,\"Say \"\"hi\"\", then go\",Task,,,,,2025-03-01,\r\n" +
+                "3,\"Two\nlines\",Task,,,,,2025-03-01,\r\n");
+        assertThat(result.bytes()).isEqualTo(Files.size(result.path()));
+    }
+    
+    @Test
+    @DisplayName("NDJSON export should write one JSON object per line")
+    void testNdjsonExport() throws IOException {
+        // Given
+        when(mockClient.streamWorkPackagePages(eq("my-project"), any(WorkPackageQuery.class))).thenReturn(Flux.just(
+                List.of(workPackage(1, "First")), List.of(workPackage(2, "Second"))));
+        
+        // When
+        WorkPackageExport.Result result = new WorkPackageExport(mockClient, directory)
+                .run("my-project", WorkPackageQuery.none(), WorkPackageExport.Format.NDJSON);
+        
+        // Then
+        List<String> lines = Files.readAllLines(result.path());
+        assertThat(lines).hasSize(2);
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertThat(objectMapper.readTree(lines.get(1)).path("id").asInt()).isEqualTo(2);
+        assertThat(objectMapper.readTree(lines.get(1)).path("subject").asText()).isEqualTo("Second");
+        assertThat(objectMapper.readTree(lines.get(0)).path("type").asText()).isEqualTo("Task");
+    }
+    
+    @Test
+    @DisplayName("a failed export should not leave a file behind")
+    void testFailedExport() throws IOException {
+        // Given
+        when(mockClient.streamWorkPackagePages(eq("my-project"), any(WorkPackageQuery.class))).thenReturn(
+                Flux.concat(Flux.just(List.of(workPackage(1, "First"))),
+                        Flux.error(new RuntimeException("Failed to list work packages: 503"))));
+        
+        // When / Then
+        assertThatThrownBy(() -> new WorkPackageExport(mockClient, directory)
+                .run("my-project", WorkPackageQuery.none(), WorkPackageExport.Format.CSV))
+                .hasMessageContaining("503");
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+    
+    private static WorkPackage workPackage(int id, String subject) {
+        WorkPackage.Link type = new WorkPackage.Link();
+        type.setTitle("Task");
+        WorkPackage.Links links = new WorkPackage.Links();
+        links.setType(type);
+        WorkPackage wp = new WorkPackage();
+        wp.setId(id);
+        wp.setSubject(subject);
+        wp.setDueDate("2025-03-01");
+        wp.setLinks(links);
+        return wp;
+    }
+}
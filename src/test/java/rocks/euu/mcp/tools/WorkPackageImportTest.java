@@ -0,0 +1,161 @@
+package rocks.euu.mcp.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.model.Relation;
+import rocks.euu.mcp.model.WorkPackage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WorkPackageImport Unit Tests")
+class WorkPackageImportTest {
+    
+    @Mock
+    private OpenProjectClient mockClient;
+    
+    @TempDir
+    private Path directory;
+    
+    @Test
+    @DisplayName("CSV import should create valid rows, report invalid ones and link dependencies")
+    void testCsvImport() throws IOException {
+        // Given
+        Path file = directory.resolve("plan.csv");
+        Files.writeString(file, """
+                key,subject,startDate,dueDate,type,dependsOn
+                design,Design,2025-02-01,2025-02-05,,
+                build,"Build, ""v1""\",2025-02-06,2025-02-15,,design
+                ,,2025-02-16,2025-02-20,,
+                test,Test,2025-02-30,2025-03-01,,build
+                release,Release,2025-03-02,2025-03-02,,test;build
+                """);
+        when(mockClient.createWorkPackageAsync(eq("my-project"), anyString(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> Mono.just(created(switch ((String) invocation.getArgument(1)) {
+                    case "Design" -> 101;
+                    case "Build, \"v1\"" -> 102;
+                    default -> 104;
+                })));
+        when(mockClient.createRelationAsync(anyInt(), anyInt(), eq("follows"))).thenReturn(Mono.just(new Relation()));
+        
+        // When
+        WorkPackageImport.Result result = new WorkPackageImport(mockClient, type -> 1, 2)
+                .run("my-project", file, WorkPackageImport.Format.CSV, ProgressReporter.from(null));
+        
+        // Then
+        assertThat(result.rows()).isEqualTo(5);
+        assertThat(result.created()).isEqualTo(3);
+        assertThat(result.invalid()).isEqualTo(2);
+        assertThat(result.relationsCreated()).isEqualTo(2);
+        assertThat(result.relationsFailed()).isEqualTo(1);
+        verify(mockClient).createRelationAsync(102, 101, "follows");
+        verify(mockClient).createRelationAsync(104, 102, "follows");
+        verify(mockClient, never()).createRelationAsync(anyInt(), eq(103), anyString());
+        
+        List<JsonNode> lines = resultLines(result.resultFile());
+        assertThat(lines).hasSize(8);
+        assertThat(lines.get(2).path("error").asText()).isEqualTo("Missing subject");
+        assertThat(lines.get(3).path("error").asText()).contains("2025-02-30");
+        assertThat(lines.get(6).path("error").asText()).contains("'test'");
+    }
+    
+    @Test
+    @DisplayName("a rejected row should not add dependencies to the work package of its key")
+    void testRejectedDuplicateKeyDependencies() throws IOException {
+        // Given: the second 'a' is a duplicate, so its dependency on 'b' must not reach the first 'a'
+        Path file = directory.resolve("plan.csv");
+        Files.writeString(file, """
+                key,subject,dependsOn
+                a,First,
+                b,Second,
+                a,Again,b
+                """);
+        when(mockClient.createWorkPackageAsync(eq("my-project"), anyString(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> Mono.just(created("First".equals(invocation.getArgument(1)) ? 301 : 302)));
+        
+        // When
+        WorkPackageImport.Result result = new WorkPackageImport(mockClient, type -> null, 2)
+                .run("my-project", file, WorkPackageImport.Format.CSV, ProgressReporter.from(null));
+        
+        // Then
+        assertThat(result.created()).isEqualTo(2);
+        assertThat(result.invalid()).isEqualTo(1);
+        assertThat(result.relationsCreated()).isZero();
+        assertThat(result.relationsFailed()).isZero();
+        verify(mockClient, never()).createRelationAsync(anyInt(), anyInt(), anyString());
+        assertThat(resultLines(result.resultFile()).get(2).path("error").asText()).isEqualTo("Duplicate key 'a'");
+    }
+    
+    @Test
+    @DisplayName("NDJSON import should accept arrays for dependsOn and report unreadable lines")
+    void testNdjsonImport() throws IOException {
+        // Given
+        Path file = directory.resolve("plan.ndjson");
+        Files.writeString(file, """
+                {"key": 1, "subject": "First"}
+                not json
+                {"key": 2, "subject": "Second", "dependsOn": [1]}
+                """);
+        when(mockClient.createWorkPackageAsync(eq("my-project"), anyString(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> Mono.just(created("First".equals(invocation.getArgument(1)) ? 201 : 202)));
+        when(mockClient.createRelationAsync(202, 201, "follows")).thenReturn(Mono.just(new Relation()));
+        
+        // When
+        WorkPackageImport.Result result = new WorkPackageImport(mockClient, type -> null, 4)
+                .run("my-project", file, WorkPackageImport.Format.NDJSON, ProgressReporter.from(null));
+        
+        // Then
+        assertThat(result.created()).isEqualTo(2);
+        assertThat(result.invalid()).isEqualTo(1);
+        assertThat(result.relationsCreated()).isEqualTo(1);
+        assertThat(resultLines(result.resultFile()).get(1).path("error").asText()).startsWith("Invalid JSON");
+    }
+    
+    @Test
+    @DisplayName("readCsvRecord should handle quoted separators, quotes and line breaks")
+    void testReadCsvRecord() throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader("a,\"b,\"\"c\"\"\",\"d\r\ne\"\r\nlast"));
+        
+        assertThat(WorkPackageImport.readCsvRecord(reader)).containsExactly("a", "b,\"c\"", "d\r\ne");
+        assertThat(WorkPackageImport.readCsvRecord(reader)).containsExactly("last");
+        assertThat(WorkPackageImport.readCsvRecord(reader)).isNull();
+    }
+    
+    private static WorkPackage created(int id) {
+        WorkPackage wp = new WorkPackage();
+        wp.setId(id);
+        return wp;
+    }
+    
+    private static List<JsonNode> resultLines(Path resultFile) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(resultFile)) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,183 @@
+package rocks.euu.mcp.webhook;
+
+import rocks.euu.mcp.cache.ProjectTree;
+import rocks.euu.mcp.cache.WorkPackageCache;
+import rocks.euu.mcp.client.OpenProjectClient;
+import rocks.euu.mcp.config.OpenProjectProperties;
+import rocks.euu.mcp.model.Project;
+import rocks.euu.mcp.model.WorkPackage;
+import rocks.euu.mcp.resources.OpenProjectResources;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Posts recorded OpenProject webhook payloads from src/test/resources/webhooks
+ * to the controller.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("WebhookController Tests")
+class WebhookControllerTest {
+    
+    private static final String SECRET = "test-secret";
+    
+    @Mock
+    private OpenProjectClient mockClient;
+    
+    @Mock
+    private OpenProjectResources mockResources;
+    
+    private ProjectTree projectTree;
+    private WorkPackageCache workPackageCache;
+    private WebTestClient webTestClient;
+    
+    @BeforeEach
+    void setUp() {
+        when(mockClient.listAllProjects()).thenReturn(List.of(
+                project(1, "portfolio"),
+                project(5, "my-project")));
+        projectTree = new ProjectTree(mockClient);
+        projectTree.refresh();
+        workPackageCache = new WorkPackageCache(mockClient, new OpenProjectProperties());
+        
+        OpenProjectProperties properties = new OpenProjectProperties();
+        properties.setWebhookSecret(SECRET);
+        webTestClient = WebTestClient
+                .bindToController(new WebhookController(new WebhookHandler(mockClient, projectTree, workPackageCache, mockResources), properties))
+                .build();
+    }
+    
+    @Test
+    @DisplayName("project:updated should update the project tree in place")
+    void testProjectUpdated() throws IOException {
+        // Given
+        byte[] payload = recorded("project_updated.json");
+        
+        // When
+        post(payload, "sha1=" + WebhookController.sign(SECRET, payload))
+                .expectStatus().isNoContent();
+        
+        // Then
+        assertThat(projectTree.subtree("portfolio").children())
+                .extracting(ProjectTree.Node::name)
+                .containsExactly("My Project (renamed)");
+        ArgumentCaptor<Project> remembered = ArgumentCaptor.forClass(Project.class);
+        verify(mockClient).rememberProject(remembered.capture());
+        assertThat(remembered.getValue().getIdentifier()).isEqualTo("my-project");
+        verify(mockResources).projectChanged(remembered.getValue());
+    }
+    
+    @Test
+    @DisplayName("work_package:updated should update the cached project and forget its remembered lists")
+    void testWorkPackageUpdated() throws IOException {
+        // Given
+        when(mockClient.streamWorkPackages(eq("5"), any())).thenReturn(Flux.just(workPackage(41, 5), workPackage(42, 5)));
+        workPackageCache.workPackages(5);
+        byte[] payload = recorded("work_package_updated.json");
+        
+        // When
+        post(payload, "sha1=" + WebhookController.sign(SECRET, payload))
+                .expectStatus().isNoContent();
+        
+        // Then
+        verify(mockClient).forgetWorkPackage(42, Set.of("5", "my-project"));
+        assertThat(workPackageCache.workPackages(5)).extracting(WorkPackage::getSubject)
+                .containsExactly("Task 41", "Set up CI pipeline");
+        verify(mockResources).workPackagesChanged(5);
+    }
+    
+    @Test
+    @DisplayName("a work package that moved should also forget the remembered lists of its previous project")
+    void testWorkPackageMoved() throws IOException {
+        // Given: work package 42 was cached in project 1, the payload puts it into project 5
+        when(mockClient.streamWorkPackages(eq("1"), any())).thenReturn(Flux.just(workPackage(41, 1), workPackage(42, 1)));
+        workPackageCache.workPackages(1);
+        byte[] payload = recorded("work_package_updated.json");
+        
+        // When
+        post(payload, "sha1=" + WebhookController.sign(SECRET, payload))
+                .expectStatus().isNoContent();
+        
+        // Then
+        verify(mockClient).forgetWorkPackage(42, Set.of("1", "portfolio", "5", "my-project"));
+        assertThat(workPackageCache.workPackages(1)).extracting(WorkPackage::getId).containsExactly(41);
+        verify(mockResources).workPackagesChanged(1);
+        verify(mockResources).workPackagesChanged(5);
+    }
+    
+    @Test
+    @DisplayName("payloads with a wrong or missing signature should be rejected")
+    void testInvalidSignature() throws IOException {
+        // Given
+        byte[] payload = recorded("project_updated.json");
+        
+        // When / Then
+        post(payload, "sha1=" + WebhookController.sign("other-secret", payload))
+                .expectStatus().isUnauthorized();
+        webTestClient.post().uri(WebhookController.PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(payload)
+                .exchange()
+                .expectStatus().isUnauthorized();
+        
+        verify(mockClient, never()).rememberProject(any());
+        verify(mockClient, never()).forgetWorkPackage(anyInt(), anyCollection());
+        verify(mockResources, never()).projectChanged(any());
+        assertThat(projectTree.subtree("portfolio").children()).isEmpty();
+    }
+    
+    private WebTestClient.ResponseSpec post(byte[] payload, String signature) {
+        return webTestClient.post().uri(WebhookController.PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(WebhookController.SIGNATURE_HEADER, signature)
+                .bodyValue(payload)
+                .exchange();
+    }
+    
+    private static byte[] recorded(String name) throws IOException {
+        try (InputStream in = WebhookControllerTest.class.getResourceAsStream("/webhooks/" + name)) {
+            return in.readAllBytes();
+        }
+    }
+    
+    private static WorkPackage workPackage(int id, int projectId) {
+        WorkPackage.Link project = new WorkPackage.Link();
+        project.setHref("/api/v3/projects/" + projectId);
+        WorkPackage.Links links = new WorkPackage.Links();
+        links.setProject(project);
+        WorkPackage workPackage = new WorkPackage();
+        workPackage.setId(id);
+        workPackage.setSubject("Task " + id);
+        workPackage.setLinks(links);
+        return workPackage;
+    }
+    
+    private static Project project(int id, String identifier) {
+        Project project = new Project();
+        project.setId(id);
+        project.setIdentifier(identifier);
+        project.setName(identifier);
+        return project;
+    }
+}